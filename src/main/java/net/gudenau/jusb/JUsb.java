@@ -7,6 +7,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -92,6 +94,14 @@ public sealed interface JUsb extends AutoCloseable permits JUsbImpl {
             .toList();
     }
 
+    /**
+     * Gets the {@link UsbEventLoop} used to drive this instance from an application event loop.
+     *
+     * @return The event loop of this instance
+     * @throws IllegalStateException if {@link Option#EXTERNAL_EVENTS} was not enabled
+     */
+    UsbEventLoop eventLoop();
+
     @Override void close() throws UsbException;
     
     /**
@@ -106,6 +116,10 @@ public sealed interface JUsb extends AutoCloseable permits JUsbImpl {
          * The set of USB hotplug callbacks.
          */
         private final Set<DeviceHotplugCallback> hotplugCallbacks = new HashSet<>();
+        /**
+         * The executor asynchronous transfer completions are run on, null runs them on the event thread.
+         */
+        private Executor completionExecutor = ForkJoinPool.commonPool();
         
         private Builder() {}
     
@@ -136,6 +150,38 @@ public sealed interface JUsb extends AutoCloseable permits JUsbImpl {
             return this;
         }
     
+        /**
+         * Sets the {@link Executor} that completes the futures returned by {@link UsbAsyncTransfer#submit()}, any
+         * continuations chained to those futures run there as well. Defaults to {@link ForkJoinPool#commonPool()}, use
+         * {@link #inlineCompletions()} to complete them on the event thread like older versions did.
+         * <p>
+         * Completions are queued by the event thread and run in the order the transfers finished by a single task at a
+         * time, so continuations never hold up libusb's event handling. They do delay the completions queued behind
+         * them though, slow work should be moved elsewhere with the {@code *Async} methods of the future.
+         *
+         * @param executor The executor to complete transfers on
+         * @return The current builder instance
+         */
+        public Builder completionExecutor(Executor executor) {
+            Objects.requireNonNull(executor, "executor can't be null");
+            completionExecutor = executor;
+            return this;
+        }
+    
+        /**
+         * Completes the futures returned by {@link UsbAsyncTransfer#submit()} directly on the event thread instead of
+         * handing them to the completion executor.
+         * <p>
+         * This has the lowest latency, but every continuation chained to a transfer future will block the event thread
+         * and with it every other transfer of this instance. Only use this with short, non-blocking continuations.
+         *
+         * @return The current builder instance
+         */
+        public Builder inlineCompletions() {
+            completionExecutor = null;
+            return this;
+        }
+    
         /**
          * Constructs a new {@link JUsb} instance.
          *
@@ -143,7 +189,7 @@ public sealed interface JUsb extends AutoCloseable permits JUsbImpl {
          * @throws UsbException if there was an exception initializing the native USB subsystem
          */
         public JUsb build() throws UsbException {
-            return JUsbImpl.init(options, hotplugCallbacks);
+            return JUsbImpl.init(options, hotplugCallbacks, completionExecutor);
         }
     }
     
@@ -167,5 +213,12 @@ public sealed interface JUsb extends AutoCloseable permits JUsbImpl {
          * Enable automatic kernel driver detach support.
          */
         ENABLE_DETACH,
+        /**
+         * Let the application drive event handling through {@link JUsb#eventLoop()} instead of creating a worker
+         * thread for {@link #ENABLE_ASYNC} and {@link #ENABLE_HOTPLUG}.
+         * <p>
+         * Not supported on Windows, libusb does not expose its file descriptors there.
+         */
+        EXTERNAL_EVENTS,
     }
 }
@@ -1,6 +1,8 @@
 package net.gudenau.jusb;
 
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -18,6 +20,17 @@ public interface UsbAsyncTransfer extends AutoCloseable {
      */
     void bulkTransfer(int endpoint, UsbDirection direction, long timeout);
     
+    /**
+     * Configures this transfer as a USB 3 bulk stream transfer, the stream must have been allocated with
+     * {@link UsbDeviceHandle#allocStreams(int, int...)}.
+     *
+     * @param endpoint The endpoint to transfer data from/to
+     * @param direction The direction of the transfer
+     * @param streamId The ID of the stream
+     * @param timeout The timeout of the transfer
+     */
+    void bulkStreamTransfer(int endpoint, UsbDirection direction, int streamId, long timeout);
+    
     /**
      * Configures this transfer as an interrupt transfer.
      *
@@ -28,12 +41,61 @@ public interface UsbAsyncTransfer extends AutoCloseable {
     void interruptTransfer(int endpoint, UsbDirection direction, long timeout);
     
     /**
-     * Configures this transfer as a control transfer.
+     * Configures this transfer as a control transfer, the buffer has to start with the 8 byte setup packet. See
+     * {@link #controlTransfer(int, int, int, int, MemorySegment, long, int, long)} to have the setup packet built for
+     * you.
      *
      * @param timeout The timeout of the transfer
      */
     void controlTransfer(long timeout);
     
+    /**
+     * Configures this transfer as a control transfer with the same parameters as
+     * {@link UsbDeviceHandle#controlTransfer(int, int, int, int, MemorySegment, long, int, long)}, replacing the buffer
+     * of this transfer.
+     * <p>
+     * The setup packet is built into memory owned by this transfer, the data stage is copied from the segment when this
+     * transfer is submitted and received data is copied back before the completion is delivered. The buffer of the
+     * {@link Result} only covers the data stage.
+     *
+     * @param requestType The type field
+     * @param request The request field
+     * @param value The value field
+     * @param index The index field
+     * @param segment The memory of the data stage
+     * @param offset The offset of the data in the segment
+     * @param length The length of the data, at most 65535 bytes
+     * @param timeout The timeout of the transfer
+     */
+    void controlTransfer(int requestType, int request, int value, int index, MemorySegment segment, long offset, int length, long timeout);
+    
+    /**
+     * Configures this transfer as an isochronous transfer of equally sized packets. The transfer must have been created
+     * with room for at least {@code packets} packets via {@link UsbDeviceHandle#createTransfer(int)} and the buffer
+     * must be at least {@code packets * packetLength} bytes.
+     *
+     * @param endpoint The endpoint to transfer data from/to
+     * @param direction The direction of the transfer
+     * @param packets The amount of packets
+     * @param packetLength The length of each packet
+     * @param timeout The timeout of the transfer
+     * @throws IllegalArgumentException if the packets do not fit in the buffer
+     * @throws IllegalStateException if no buffer was set
+     */
+    void isochronousTransfer(int endpoint, UsbDirection direction, int packets, int packetLength, long timeout);
+    
+    /**
+     * Configures this transfer as an isochronous transfer with packets sized to the maximum isochronous packet size of
+     * the endpoint, see {@link UsbDeviceHandle#maxIsoPacketSize(int, UsbDirection)}.
+     *
+     * @param endpoint The endpoint to transfer data from/to
+     * @param direction The direction of the transfer
+     * @param packets The amount of packets
+     * @param timeout The timeout of the transfer
+     * @throws UsbException if the maximum packet size could not be determined
+     */
+    void isochronousTransfer(int endpoint, UsbDirection direction, int packets, long timeout) throws UsbException;
+    
     /**
      * Configures this transfer as a bulk transfer.
      *
@@ -60,6 +122,20 @@ public interface UsbAsyncTransfer extends AutoCloseable {
         interruptTransfer(endpoint, direction, timeout);
     }
     
+    /**
+     * Configures this transfer as a USB 3 bulk stream transfer.
+     *
+     * @param endpoint The endpoint to transfer data from/to
+     * @param direction The direction of the transfer
+     * @param streamId The ID of the stream
+     * @param buffer The data buffer of the transfer
+     * @param timeout The timeout of the transfer
+     */
+    default void bulkStreamTransfer(int endpoint, UsbDirection direction, int streamId, ByteBuffer buffer, long timeout) {
+        buffer(buffer);
+        bulkStreamTransfer(endpoint, direction, streamId, timeout);
+    }
+    
     /**
      * Configures this transfer as a control transfer.
      *
@@ -72,22 +148,123 @@ public interface UsbAsyncTransfer extends AutoCloseable {
     }
     
     /**
-     * Sets the buffer of this transfer.
+     * Configures this transfer as a control transfer with a setup packet built for you, see
+     * {@link #controlTransfer(int, int, int, int, MemorySegment, long, int, long)}.
+     *
+     * @param requestType The type field
+     * @param request The request field
+     * @param value The value field
+     * @param index The index field
+     * @param buffer The data stage of the transfer, at most 65535 bytes are used
+     * @param timeout The timeout of the transfer
+     */
+    default void controlTransfer(int requestType, int request, int value, int index, ByteBuffer buffer, long timeout) {
+        controlTransfer(requestType, request, value, index, MemorySegment.ofBuffer(buffer), 0, Math.min(buffer.remaining(), 0xFFFF), timeout);
+    }
+    
+    /**
+     * Sets the buffer of this transfer, heap buffers are handled like heap segments in
+     * {@link #buffer(MemorySegment, long, long)}.
      *
      * @param buffer The buffer to use
      */
     void buffer(ByteBuffer buffer);
     
+    /**
+     * Sets the buffer of this transfer to a region of memory. The memory must stay alive while this transfer is
+     * in-flight.
+     * <p>
+     * Heap memory is copied into a pooled native buffer when this transfer is submitted and received data is copied
+     * back before the completion is delivered.
+     *
+     * @param segment The memory to use
+     * @param offset The offset of the buffer in the segment
+     * @param length The length of the buffer
+     */
+    void buffer(MemorySegment segment, long offset, long length);
+    
     /**
      * Submits this transfer to the USB subsystem.
+     * <p>
+     * Cancelling the returned future cancels the native transfer as well. The future is cancelled right away, this
+     * transfer can be reused once the USB subsystem confirmed the cancellation.
      *
      * @return A future for this transfer
      * @throws UsbException if there was a failure submitting this transfer
      */
     CompletableFuture<Result> submit() throws UsbException;
     
+    /**
+     * Submits this transfer to the USB subsystem like {@link #submit()}, but the future completes with the status of
+     * the transfer instead of failing for timeouts, stalls, cancellations by the USB subsystem or other transfer errors.
+     * The data stays in the buffer of this transfer, {@link #actualLength()} gets the amount that was transferred.
+     * <p>
+     * No exceptions or results are created when a transfer completes, so this is intended for transfers where
+     * timeouts and stalls are routine.
+     *
+     * @return A future for the status of this transfer
+     * @throws UsbException if there was a failure submitting this transfer
+     */
+    CompletableFuture<UsbTransferStatus> submitForStatus() throws UsbException;
+    
+    /**
+     * Submits this transfer to the USB subsystem and passes the result to a listener instead of a future.
+     * <p>
+     * The listener is invoked on the event thread once the transfer is over and nothing is allocated to deliver the
+     * result. The transfer can be reconfigured and resubmitted from within the listener, resubmitting with the same
+     * listener keeps a stream of transfers free of allocations. Other transfers are not completed while a listener
+     * runs, so listeners should return quickly.
+     *
+     * @param listener The listener to notify
+     * @throws UsbException if there was a failure submitting this transfer
+     */
+    void submit(Listener listener) throws UsbException;
+    
+    /**
+     * Requests the cancellation of this transfer if it is in-flight. The completion is still delivered, with a status
+     * of {@link UsbTransferStatus#CANCELLED} unless the transfer finished first.
+     */
+    void cancel();
+    
+    /**
+     * Gets the amount of data transferred by the last completed transfer. This is not valid for isochronous transfers,
+     * see {@link #isoPackets()} instead.
+     *
+     * @return The amount of data transferred
+     */
+    int actualLength();
+    
+    /**
+     * Gets the packets of the last completed isochronous transfer. Each packet buffer is a slice of the transfer
+     * buffer at the offset of the packet with the length set to the amount of data actually transferred.
+     *
+     * @return The isochronous packets or an empty list if this is not an isochronous transfer
+     */
+    List<IsoPacket> isoPackets();
+    
+    /**
+     * Closes this transfer. An in-flight transfer is cancelled and freed once the cancellation completes.
+     *
+     * @throws UsbException if there was a failure closing this transfer
+     */
     @Override void close() throws UsbException;
     
+    /**
+     * A listener for completed transfers, see {@link #submit(Listener)}.
+     */
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * Invoked on the event thread once a transfer is over.
+         *
+         * @param transfer The transfer that completed
+         * @param status The status of the transfer
+         * @param length The amount of data transferred, not valid for isochronous transfers
+         * @param buffer The buffer of the transfer as it was registered
+         */
+        void complete(UsbAsyncTransfer transfer, UsbTransferStatus status, int length, MemorySegment buffer);
+    }
+    
     /**
      * A result of a transfer. If the buffer is present it will be a slice of the provided one with the length set to
      * the amount of data actually transferred. stall will be set if there was a stall condition or a control request
@@ -97,4 +274,13 @@ public interface UsbAsyncTransfer extends AutoCloseable {
      * @param stall True if the transfer stalled
      */
     record Result(ByteBuffer buffer, boolean stall) {}
+    
+    /**
+     * A packet of an isochronous transfer. Unlike the other transfer types each packet completes with its own status.
+     *
+     * @param buffer The data of this packet, limited to the amount of data actually transferred
+     * @param length The requested length of this packet
+     * @param status The status of this packet
+     */
+    record IsoPacket(ByteBuffer buffer, int length, UsbTransferStatus status) {}
 }
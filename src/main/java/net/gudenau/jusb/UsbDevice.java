@@ -51,5 +51,13 @@ public sealed interface UsbDevice extends AutoCloseable permits UsbDeviceImpl {
      */
     UsbDeviceHandle open() throws UsbException;
     
+    /**
+     * Releases the reference to this device that was taken when {@link JUsb#devices()} returned it. Handles that were
+     * opened from this device stay valid.
+     * <p>
+     * Every listing returns the same object for a device while it is connected and takes another reference, so the
+     * device has to be closed once per listing it was returned from. References that are left are released when the
+     * {@link JUsb} instance is closed.
+     */
     @Override void close();
 }
@@ -1,9 +1,14 @@
 package net.gudenau.jusb;
 
+import net.gudenau.jusb.descriptor.UsbEndpointDescriptor;
 import net.gudenau.jusb.internal.UsbDeviceHandleImpl;
 
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * A USB device handle.
@@ -29,10 +34,40 @@ public sealed interface UsbDeviceHandle extends AutoCloseable permits UsbDeviceH
      * Claims an interface on the device for this application to use.
      *
      * @param iface the interface to claim
-     * @throws UsbException if the interface could not be claimed
+     * @throws UsbException if the interface could not be claimed or its endpoints could not be read, see
+     *                      {@link #endpointDescriptor(int, UsbDirection)}
      */
     void claimInterface(int iface) throws UsbException;
     
+    /**
+     * Releases an interface that was claimed with {@link #claimInterface(int)}.
+     *
+     * @param iface the interface to release
+     * @throws UsbException if the interface could not be released
+     */
+    void releaseInterface(int iface) throws UsbException;
+    
+    /**
+     * Activates an alternate setting of a claimed interface.
+     *
+     * @param iface the claimed interface
+     * @param altSetting the alternate setting to activate
+     * @throws UsbException if the alternate setting could not be activated or its endpoints could not be read
+     */
+    void setInterfaceAltSetting(int iface, int altSetting) throws UsbException;
+    
+    /**
+     * Gets the descriptor of an endpoint of a claimed interface in its current alternate setting.
+     * <p>
+     * The endpoints are indexed whenever an interface is claimed, released or switched to another alternate setting,
+     * so this is a constant time lookup that doesn't walk the configuration descriptor.
+     *
+     * @param endpoint The endpoint number
+     * @param direction The direction of the endpoint
+     * @return The endpoint descriptor or null if no claimed interface has this endpoint
+     */
+    UsbEndpointDescriptor endpointDescriptor(int endpoint, UsbDirection direction);
+    
     /**
      * Attempts to perform a synchronous control transfer with the device.
      *
@@ -48,6 +83,24 @@ public sealed interface UsbDeviceHandle extends AutoCloseable permits UsbDeviceH
      */
     int controlTransfer(int requestType, int request, int value, int index, ByteBuffer buffer, long timeout) throws UsbException, TimeoutException;
     
+    /**
+     * Attempts to perform a synchronous control transfer with the device using a memory segment. Heap memory is copied
+     * through a pooled native buffer.
+     *
+     * @param requestType The type field
+     * @param request The request field
+     * @param value The value field
+     * @param index The index field
+     * @param segment The memory of the data to transfer
+     * @param offset The offset of the data in the segment
+     * @param length The length of the data, at most 65535 bytes
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The amount of data transferred
+     * @throws UsbException if there was a failure completing this request
+     * @throws TimeoutException if the request timed out
+     */
+    int controlTransfer(int requestType, int request, int value, int index, MemorySegment segment, long offset, int length, long timeout) throws UsbException, TimeoutException;
+    
     /**
      * Attempts to perform a synchronous bulk transfer with the device.
      *
@@ -57,10 +110,73 @@ public sealed interface UsbDeviceHandle extends AutoCloseable permits UsbDeviceH
      * @param timeout The timeout (in milliseconds) of this transfer
      * @return The amount of data transferred
      * @throws UsbException if there was a failure completing this request
-     * @throws TimeoutException if the request timed out
+     * @throws TimeoutException if the request timed out, a {@link UsbTimeoutException} with the amount of data that
+     * was transferred before the timeout. The position of the buffer is advanced by that amount.
      */
     int bulkTransfer(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException, TimeoutException;
     
+    /**
+     * Attempts to perform a synchronous bulk transfer with the device using a memory segment. Heap memory is copied
+     * through a pooled native buffer.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param segment The memory of the data to read/write
+     * @param offset The offset of the data in the segment
+     * @param length The length of the data
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The amount of data transferred
+     * @throws UsbException if there was a failure completing this request
+     * @throws TimeoutException if the request timed out
+     */
+    int bulkTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException, TimeoutException;
+    
+    /**
+     * Performs a synchronous bulk transfer like {@link #bulkTransfer(int, UsbDirection, ByteBuffer, long)}, but
+     * reports timeouts, stalls and other transfer failures in the result instead of throwing them. The position of the
+     * buffer is advanced by the amount of data transferred, even if the transfer did not complete.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param buffer The buffer of data to read/write
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The status and the amount of data transferred
+     * @throws UsbException if the transfer could not be performed at all
+     */
+    UsbTransferResult tryBulkTransfer(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException;
+    
+    /**
+     * Performs a synchronous bulk transfer like
+     * {@link #bulkTransfer(int, UsbDirection, MemorySegment, long, int, long)}, but reports timeouts, stalls and other
+     * transfer failures in the result instead of throwing them.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param segment The memory of the data to read/write
+     * @param offset The offset of the data in the segment
+     * @param length The length of the data
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The status and the amount of data transferred
+     * @throws UsbException if the transfer could not be performed at all
+     */
+    UsbTransferResult tryBulkTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException;
+    
+    /**
+     * Performs a synchronous bulk transfer like {@link #tryBulkTransfer(int, UsbDirection, ByteBuffer, long)}, but only
+     * returns the status. The amount of data transferred is the amount the position of the buffer was advanced by.
+     * <p>
+     * Nothing is allocated for the expected outcomes of a transfer, so this is intended for polling loops where
+     * timeouts and stalls are routine.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param buffer The buffer of data to read/write
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The status of the transfer
+     * @throws UsbException if the transfer could not be performed at all
+     */
+    UsbTransferStatus bulkTransferStatus(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException;
+    
     /**
      * Attempts to perform a synchronous interrupt transfer with the device.
      *
@@ -70,10 +186,73 @@ public sealed interface UsbDeviceHandle extends AutoCloseable permits UsbDeviceH
      * @param timeout The timeout (in milliseconds) of this transfer
      * @return The amount of data transferred
      * @throws UsbException if there was a failure completing this request
-     * @throws TimeoutException if the request timed out
+     * @throws TimeoutException if the request timed out, a {@link UsbTimeoutException} with the amount of data that
+     * was transferred before the timeout. The position of the buffer is advanced by that amount.
      */
     int interruptTransfer(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException, TimeoutException;
     
+    /**
+     * Attempts to perform a synchronous interrupt transfer with the device using a memory segment. Heap memory is copied
+     * through a pooled native buffer.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param segment The memory of the data to read/write
+     * @param offset The offset of the data in the segment
+     * @param length The length of the data
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The amount of data transferred
+     * @throws UsbException if there was a failure completing this request
+     * @throws TimeoutException if the request timed out
+     */
+    int interruptTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException, TimeoutException;
+    
+    /**
+     * Performs a synchronous interrupt transfer like {@link #interruptTransfer(int, UsbDirection, ByteBuffer, long)}, but
+     * reports timeouts, stalls and other transfer failures in the result instead of throwing them. The position of the
+     * buffer is advanced by the amount of data transferred, even if the transfer did not complete.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param buffer The buffer of data to read/write
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The status and the amount of data transferred
+     * @throws UsbException if the transfer could not be performed at all
+     */
+    UsbTransferResult tryInterruptTransfer(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException;
+    
+    /**
+     * Performs a synchronous interrupt transfer like
+     * {@link #interruptTransfer(int, UsbDirection, MemorySegment, long, int, long)}, but reports timeouts, stalls and other
+     * transfer failures in the result instead of throwing them.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param segment The memory of the data to read/write
+     * @param offset The offset of the data in the segment
+     * @param length The length of the data
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The status and the amount of data transferred
+     * @throws UsbException if the transfer could not be performed at all
+     */
+    UsbTransferResult tryInterruptTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException;
+    
+    /**
+     * Performs a synchronous interrupt transfer like {@link #tryInterruptTransfer(int, UsbDirection, ByteBuffer, long)}, but only
+     * returns the status. The amount of data transferred is the amount the position of the buffer was advanced by.
+     * <p>
+     * Nothing is allocated for the expected outcomes of a transfer, so this is intended for polling loops where
+     * timeouts and stalls are routine.
+     *
+     * @param endpoint The endpoint to transfer data to/from
+     * @param direction The direction of the transfer
+     * @param buffer The buffer of data to read/write
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return The status of the transfer
+     * @throws UsbException if the transfer could not be performed at all
+     */
+    UsbTransferStatus interruptTransferStatus(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException;
+    
     /**
      * Attempts to perform a synchronous control transfer with the device.
      *
@@ -127,6 +306,53 @@ public sealed interface UsbDeviceHandle extends AutoCloseable permits UsbDeviceH
         }
     }
     
+    /**
+     * Allocates USB 3 bulk streams on a set of endpoints, the same stream IDs are allocated on every endpoint. Stream
+     * IDs start at 1 and are used with {@link UsbAsyncTransfer#bulkStreamTransfer(int, UsbDirection, int, long)}.
+     *
+     * @param streams The amount of streams to request
+     * @param endpoints The endpoint addresses, including the direction bit
+     * @return The amount of streams that were actually allocated, this may be less than requested
+     * @throws UsbException if the streams could not be allocated
+     * @throws IllegalArgumentException if an address is not a bulk endpoint of a claimed interface, see
+     *                                  {@link #endpointDescriptor(int, UsbDirection)}
+     */
+    int allocStreams(int streams, int... endpoints) throws UsbException;
+    
+    /**
+     * Frees the USB 3 bulk streams of a set of endpoints.
+     *
+     * @param endpoints The endpoint addresses, including the direction bit
+     * @throws UsbException if the streams could not be freed
+     * @throws IllegalArgumentException if an address is not a bulk endpoint of a claimed interface
+     */
+    void freeStreams(int... endpoints) throws UsbException;
+    
+    /**
+     * Allocates a native buffer that can be used with the transfer methods of this handle and
+     * {@link UsbAsyncTransfer#buffer(MemorySegment, long, long)}, {@link MemorySegment#asByteBuffer()} gives a view for
+     * the {@link ByteBuffer} based methods.
+     * <p>
+     * When the platform supports it the buffer is mapped from the kernel's USB memory, so transfers using it skip the
+     * copy into a kernel bounce buffer. Otherwise a regular native buffer is returned.
+     * <p>
+     * The buffer stays valid until it is passed to {@link #freeBuffer(MemorySegment)} or this handle is closed,
+     * accessing it or any view of it afterwards throws an {@link IllegalStateException}.
+     *
+     * @param size The size of the buffer in bytes, at most {@link Integer#MAX_VALUE}
+     * @return The new buffer
+     * @throws UsbException if the buffer could not be allocated
+     */
+    MemorySegment allocateBuffer(long size) throws UsbException;
+    
+    /**
+     * Frees a buffer allocated by {@link #allocateBuffer(long)}, it must not be used by an in-flight transfer.
+     *
+     * @param segment The segment returned by {@link #allocateBuffer(long)}, slices of it are not accepted
+     * @throws IllegalArgumentException if the segment was not allocated by this handle
+     */
+    void freeBuffer(MemorySegment segment);
+    
     /**
      * Creates a new {@link UsbAsyncTransfer} instance.
      *
@@ -134,8 +360,150 @@ public sealed interface UsbDeviceHandle extends AutoCloseable permits UsbDeviceH
      * @throws UsbException If async transfers are not enabled or the transfer could not be created
      */
     UsbAsyncTransfer createTransfer() throws UsbException;
+    
+    /**
+     * Creates a new {@link UsbAsyncTransfer} instance that can be used for isochronous transfers of up to
+     * {@code isoPackets} packets.
+     *
+     * @param isoPackets The maximum amount of isochronous packets
+     * @return a new {@link UsbAsyncTransfer} instance
+     * @throws UsbException If async transfers are not enabled or the transfer could not be created
+     */
+    UsbAsyncTransfer createTransfer(int isoPackets) throws UsbException;
+    
+    /**
+     * Creates a new, empty {@link UsbTransferGroup} for transfers of this handle.
+     *
+     * @return A new {@link UsbTransferGroup} instance
+     * @throws UsbException If async transfers are not enabled
+     */
+    UsbTransferGroup transferGroup() throws UsbException;
+    
+    /**
+     * Submits a control transfer without waiting for it to complete, so several requests can be in-flight at once. The
+     * parameters match {@link #controlTransfer(int, int, int, int, ByteBuffer, long)}.
+     * <p>
+     * The transfer is taken from a pool owned by this handle and returned to it once it completes. The buffer must not
+     * be modified until the returned future completes, its position is not changed.
+     * <p>
+     * Requires {@link JUsb.Option#ENABLE_ASYNC}.
+     *
+     * @param requestType The type field
+     * @param request The request field
+     * @param value The value field
+     * @param index The index field
+     * @param buffer The buffer of data to transfer, at most 65535 bytes are used
+     * @param timeout The timeout (in milliseconds) of this transfer
+     * @return A future for the result, its buffer only covers the data stage
+     * @throws UsbException If async transfers are not enabled or the transfer could not be submitted
+     */
+    CompletableFuture<UsbAsyncTransfer.Result> controlTransferAsync(int requestType, int request, int value, int index, ByteBuffer buffer, long timeout) throws UsbException;
+    
+    /**
+     * Gets the maximum amount of data that a single isochronous packet on an endpoint of the active configuration can
+     * carry. This is derived from {@code wMaxPacketSize}, including the additional transactions of high-bandwidth
+     * endpoints.
+     * <p>
+     * Each packet covers one service interval, as determined by the {@code bInterval} of the endpoint, so the amount of
+     * packets in a transfer decides how much time it spans.
+     *
+     * @param endpoint The endpoint to query
+     * @param direction The direction of the endpoint
+     * @return The maximum isochronous packet size
+     * @throws UsbException if the endpoint could not be found
+     */
+    int maxIsoPacketSize(int endpoint, UsbDirection direction) throws UsbException;
+    
+    /**
+     * Creates a pipelined bulk IN reader that keeps {@code transfers} transfers of {@code transferSize} bytes
+     * submitted on the endpoint at all times. Filled buffers are handed to the consumer in order on the event thread
+     * and each transfer is resubmitted as soon as the consumer returns.
+     * <p>
+     * Requires {@link JUsb.Option#ENABLE_ASYNC}.
+     *
+     * @param endpoint The endpoint to read from
+     * @param transfers The amount of transfers to keep in-flight
+     * @param transferSize The size of each transfer in bytes, should be a multiple of the max packet size
+     * @param consumer The consumer of received data
+     * @return The new reader
+     * @throws UsbException If async transfers are not enabled or the transfers could not be submitted
+     */
+    UsbStreamReader streamReader(int endpoint, int transfers, int transferSize, Consumer<ByteBuffer> consumer) throws UsbException;
+    
+    /**
+     * Creates a pipelined bulk OUT writer that keeps up to {@code transfers} transfers of at most
+     * {@code transferSize} bytes in-flight on the endpoint. Writes block once the window is full.
+     * <p>
+     * Requires {@link JUsb.Option#ENABLE_ASYNC}.
+     *
+     * @param endpoint The endpoint to write to
+     * @param transfers The maximum amount of in-flight transfers
+     * @param transferSize The maximum size of each transfer in bytes
+     * @param timeout The timeout (in milliseconds) of each transfer
+     * @return The new writer
+     * @throws UsbException If async transfers are not enabled or the transfers could not be created
+     */
+    UsbStreamWriter streamWriter(int endpoint, int transfers, int transferSize, long timeout) throws UsbException;
+    
+    /**
+     * Creates a {@link Flow.Publisher} of the data read from a bulk IN endpoint. Each subscriber gets its own set of
+     * transfers, at most {@code min(transfers, outstanding demand)} of them are in-flight at any time so a slow
+     * subscriber throttles the device instead of causing data to be buffered.
+     * <p>
+     * Each published buffer is a copy that the subscriber owns. Items are published on the event thread.
+     * <p>
+     * Requires {@link JUsb.Option#ENABLE_ASYNC}.
+     *
+     * @param endpoint The endpoint to read from
+     * @param transfers The maximum amount of transfers to keep in-flight per subscriber
+     * @param transferSize The size of each transfer in bytes
+     * @return The new publisher
+     * @throws UsbException If async transfers are not enabled
+     */
+    Flow.Publisher<ByteBuffer> bulkPublisher(int endpoint, int transfers, int transferSize) throws UsbException;
+    
+    /**
+     * Creates a {@link Flow.Publisher} of the data read from an interrupt IN endpoint, see
+     * {@link #bulkPublisher(int, int, int)}.
+     *
+     * @param endpoint The endpoint to read from
+     * @param transfers The maximum amount of transfers to keep in-flight per subscriber
+     * @param transferSize The size of each transfer in bytes
+     * @return The new publisher
+     * @throws UsbException If async transfers are not enabled
+     */
+    Flow.Publisher<ByteBuffer> interruptPublisher(int endpoint, int transfers, int transferSize) throws UsbException;
 
+    /**
+     * Reads a string descriptor of the device in the first language it supports. Strings and the language are cached
+     * by the device, so every string is only read once.
+     *
+     * @param index The index of the string
+     * @return The string
+     * @throws UsbException if the string could not be read
+     */
     String stringDescriptor(byte index) throws UsbException;
+    
+    /**
+     * Reads the manufacturer, product and serial number strings as well as the strings of the active configuration and
+     * its interfaces into the cache of {@link #stringDescriptor(byte)}. All requests are submitted at once instead of
+     * waiting for each one in turn.
+     * <p>
+     * Strings the device stalls on or that are malformed are skipped, {@link #stringDescriptor(byte)} reports their
+     * error. Any other failure, like a timeout or the device going away, completes the future exceptionally once all
+     * requests are over. Requires {@link JUsb.Option#ENABLE_ASYNC}.
+     *
+     * @param timeout The timeout of each request in milliseconds
+     * @return A future that completes once all strings were read
+     * @throws UsbException if async transfers are not enabled or a request could not be submitted
+     */
+    CompletableFuture<Void> prefetchStringDescriptors(long timeout) throws UsbException;
 
+    /**
+     * Closes this handle. In-flight transfers of this handle are cancelled and waited for before the handle is released,
+     * when called from a completion on the event thread the handle is released once the last transfer finished.
+     *
+     * @throws UsbException if there was a failure closing this handle
+     */
     @Override void close() throws UsbException;
 }
@@ -0,0 +1,96 @@
+package net.gudenau.jusb;
+
+import net.gudenau.jusb.internal.UsbEventLoopImpl;
+
+import java.util.List;
+
+/**
+ * Allows an application event loop to drive libusb instead of a dedicated event thread, available when
+ * {@link JUsb.Option#EXTERNAL_EVENTS} is enabled.
+ * <p>
+ * The application polls the file descriptors from {@link #pollFds()} alongside its own, waits no longer than
+ * {@link #nextTimeout()} and calls {@link #handleEvents()} whenever one of them becomes ready or the timeout expires.
+ * Transfer completions and hotplug events are delivered from inside {@link #handleEvents()}.
+ * <p>
+ * These are raw operating system file descriptors, a {@link java.nio.channels.Selector} can not register them
+ * directly. They are meant for native event loops such as epoll or kqueue based ones.
+ */
+public sealed interface UsbEventLoop permits UsbEventLoopImpl {
+    /**
+     * The descriptor has data to read, the same value as {@code POLLIN}.
+     */
+    int POLLIN = 0x0001;
+    
+    /**
+     * The descriptor can be written to, the same value as {@code POLLOUT}.
+     */
+    int POLLOUT = 0x0004;
+    
+    /**
+     * Gets the file descriptors that libusb currently needs to be polled.
+     *
+     * @return An immutable list of the file descriptors
+     * @throws UsbException if the platform does not expose its file descriptors
+     */
+    List<PollFd> pollFds() throws UsbException;
+    
+    /**
+     * Sets a listener that is notified when libusb starts or stops using a file descriptor, null removes the listener.
+     * <p>
+     * The listener may be invoked from any thread that calls into jUSB.
+     *
+     * @param listener The listener to notify
+     */
+    void listener(Listener listener);
+    
+    /**
+     * Gets the amount of time until libusb has to handle its next timeout.
+     *
+     * @return The time in milliseconds, 0 if a timeout already expired or -1 if there is no pending timeout
+     * @throws UsbException if the timeout could not be determined
+     */
+    long nextTimeout() throws UsbException;
+    
+    /**
+     * Checks if libusb handles its timeouts through one of its file descriptors, in which case
+     * {@link #nextTimeout()} does not need to be respected.
+     *
+     * @return True if timeouts are signaled through the file descriptors
+     */
+    boolean timeoutsHandledByFds();
+    
+    /**
+     * Handles all pending events without blocking.
+     *
+     * @throws UsbException if libusb failed to handle the events
+     */
+    void handleEvents() throws UsbException;
+    
+    /**
+     * A file descriptor libusb needs to be polled.
+     *
+     * @param fd The file descriptor
+     * @param events The events to poll for, a combination of {@link #POLLIN} and {@link #POLLOUT}
+     */
+    record PollFd(int fd, int events) {}
+    
+    /**
+     * Notified when the set of file descriptors changes.
+     */
+    interface Listener {
+        /**
+         * Invoked when libusb starts using a file descriptor.
+         *
+         * @param fd The file descriptor
+         * @param events The events to poll for, a combination of {@link #POLLIN} and {@link #POLLOUT}
+         */
+        void added(int fd, int events);
+        
+        /**
+         * Invoked when libusb stops using a file descriptor.
+         *
+         * @param fd The file descriptor
+         */
+        void removed(int fd);
+    }
+}
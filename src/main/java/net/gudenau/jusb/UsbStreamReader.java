@@ -0,0 +1,31 @@
+package net.gudenau.jusb;
+
+import net.gudenau.jusb.internal.UsbStreamReaderImpl;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A pipelined bulk IN reader created via {@link UsbDeviceHandle#streamReader(int, int, int, java.util.function.Consumer)}.
+ * <p>
+ * A fixed set of transfers is kept submitted on the endpoint at all times, each transfer is resubmitted as soon as its
+ * data has been handed to the consumer so the bus never goes idle waiting on the application.
+ * <p>
+ * The consumer is invoked on the event thread in the order the data arrived. The buffer passed to the consumer is only
+ * valid for the duration of the call, it is reused for the next transfer once the consumer returns.
+ */
+public sealed interface UsbStreamReader extends AutoCloseable permits UsbStreamReaderImpl {
+    /**
+     * Gets a future that completes once this reader has stopped and all of its transfers have been released. It
+     * completes normally when the reader was closed and exceptionally if a transfer or the consumer failed.
+     *
+     * @return The completion future of this reader
+     */
+    CompletableFuture<Void> completion();
+
+    /**
+     * Stops this reader, cancelling all in-flight transfers.
+     * <p>
+     * When invoked from a thread other than the event thread this waits for the in-flight transfers to be released.
+     */
+    @Override void close();
+}
@@ -0,0 +1,60 @@
+package net.gudenau.jusb;
+
+import net.gudenau.jusb.internal.UsbStreamWriterImpl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pipelined bulk OUT writer created via {@link UsbDeviceHandle#streamWriter(int, int, int, long)}.
+ * <p>
+ * Writes are copied into a fixed window of pre-allocated transfers and submitted right away, up to the window size
+ * transfers are kept in-flight at once. When the window is full {@link #write(ByteBuffer)} blocks until a transfer
+ * completes.
+ * <p>
+ * Failures of in-flight transfers are reported by the next call to {@link #write(ByteBuffer)} or {@link #flush()}.
+ */
+public sealed interface UsbStreamWriter extends AutoCloseable permits UsbStreamWriterImpl {
+    /**
+     * Queues the remaining data of the buffer for writing, blocking while the in-flight window is full. Data larger
+     * than the transfer size is split into several transfers.
+     * <p>
+     * The buffer is copied, it may be reused as soon as this method returns. Its position is advanced to its limit.
+     *
+     * @param buffer The data to write
+     * @throws UsbException if a previous transfer failed or the transfer could not be submitted
+     * @throws InterruptedException if interrupted while waiting for a free transfer
+     */
+    void write(ByteBuffer buffer) throws UsbException, InterruptedException;
+
+    /**
+     * Waits for all queued data to be written.
+     *
+     * @throws UsbException if a transfer failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void flush() throws UsbException, InterruptedException;
+
+    /**
+     * Gets the amount of bytes that have been confirmed as written by the device.
+     *
+     * @return The amount of bytes written
+     */
+    long written();
+
+    /**
+     * Gets the amount of transfers that are currently in-flight.
+     *
+     * @return The in-flight transfer count
+     */
+    int inFlight();
+
+    /**
+     * Flushes this writer and releases its transfers.
+     * <p>
+     * If this writer already failed or the calling thread gets interrupted while waiting, the pending writes are
+     * cancelled instead of flushed. The interrupt status of the thread is kept.
+     *
+     * @throws UsbException if a transfer failed or the pending writes were cancelled
+     */
+    @Override void close() throws UsbException;
+}
@@ -0,0 +1,54 @@
+package net.gudenau.jusb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link TimeoutException} for USB transfers that keeps track of the data that was transferred before the timeout.
+ */
+public class UsbTimeoutException extends TimeoutException {
+    private final int transferred;
+    private final ByteBuffer buffer;
+    
+    /**
+     * Constructs a UsbTimeoutException with the specified detail message and amount of transferred data.
+     *
+     * @param message The detail message
+     * @param transferred The amount of data transferred before the timeout
+     */
+    public UsbTimeoutException(String message, int transferred) {
+        this(message, transferred, null);
+    }
+    
+    /**
+     * Constructs a UsbTimeoutException with the specified detail message and the data transferred before the timeout.
+     *
+     * @param message The detail message
+     * @param transferred The amount of data transferred before the timeout
+     * @param buffer The data transferred before the timeout, may be null
+     */
+    public UsbTimeoutException(String message, int transferred, ByteBuffer buffer) {
+        super(message);
+        this.transferred = transferred;
+        this.buffer = buffer;
+    }
+    
+    /**
+     * Gets the amount of data that was transferred before the timeout.
+     *
+     * @return The amount of transferred bytes
+     */
+    public int transferred() {
+        return transferred;
+    }
+    
+    /**
+     * Gets the data that was transferred before the timeout, only present for asynchronous transfers. Synchronous
+     * transfers advance the position of their buffer instead.
+     *
+     * @return A slice of the transfer buffer or null
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+}
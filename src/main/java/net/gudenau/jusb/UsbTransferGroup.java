@@ -0,0 +1,98 @@
+package net.gudenau.jusb;
+
+import net.gudenau.jusb.internal.UsbTransferGroupImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of {@link UsbAsyncTransfer}s that are submitted and waited for together, see
+ * {@link UsbDeviceHandle#transferGroup()}.
+ * <p>
+ * The transfers are submitted with a {@link UsbAsyncTransfer.Listener} owned by the group, completions are counted
+ * as they arrive and the waiting thread is only woken once the awaited condition is met. The first transfer that does
+ * not complete successfully cancels the remaining transfers of the group.
+ * <p>
+ * Only one thread may wait on a group at a time and a group can't be waited on from a transfer completion.
+ */
+public sealed interface UsbTransferGroup permits UsbTransferGroupImpl {
+    /**
+     * Adds a configured transfer of the same device handle to this group.
+     *
+     * @param transfer The transfer to add
+     * @throws IllegalStateException if the group is in-flight
+     * @throws IllegalArgumentException if the transfer belongs to a different handle or is already part of this group
+     */
+    void add(UsbAsyncTransfer transfer);
+    
+    /**
+     * Removes all transfers from this group, the transfers themselves are not closed.
+     *
+     * @throws IllegalStateException if the group is in-flight
+     */
+    void clear();
+    
+    /**
+     * Submits all transfers of this group. If a transfer can not be submitted the transfers that were already
+     * submitted are cancelled and the remaining ones are skipped.
+     *
+     * @throws UsbException if there was a failure submitting a transfer
+     * @throws IllegalStateException if the group is already in-flight
+     */
+    void submit() throws UsbException;
+    
+    /**
+     * Waits for all transfers of this group to be over.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    void awaitAll() throws InterruptedException;
+    
+    /**
+     * Waits for all transfers of this group to be over for up to the provided amount of time.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return True if all transfers are over, false if the timeout expired first
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException;
+    
+    /**
+     * Waits for the first transfer of this group to be over.
+     *
+     * @return The first transfer that was over or null if the group is empty
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    UsbAsyncTransfer awaitAny() throws InterruptedException;
+    
+    /**
+     * Waits for the first transfer of this group to be over for up to the provided amount of time.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return The first transfer that was over or null if the timeout expired first or the group is empty
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    UsbAsyncTransfer awaitAny(long timeout, TimeUnit unit) throws InterruptedException;
+    
+    /**
+     * Gets the status of a transfer from the last submission of this group.
+     *
+     * @param transfer The transfer to check
+     * @return The status of the transfer or null if it is still in-flight or was never submitted
+     * @throws IllegalArgumentException if the transfer is not part of this group
+     */
+    UsbTransferStatus status(UsbAsyncTransfer transfer);
+    
+    /**
+     * Gets the first transfer of the last submission that did not complete successfully.
+     *
+     * @return The failed transfer or null if there was no failure
+     */
+    UsbAsyncTransfer failure();
+    
+    /**
+     * Requests the cancellation of all in-flight transfers of this group.
+     */
+    void cancel();
+}
@@ -0,0 +1,19 @@
+package net.gudenau.jusb;
+
+/**
+ * The outcome of a synchronous transfer that reports failures instead of throwing them, see
+ * {@link UsbDeviceHandle#tryBulkTransfer(int, UsbDirection, java.nio.ByteBuffer, long)}.
+ *
+ * @param status The status of the transfer
+ * @param transferred The amount of data transferred, this can be non-zero even if the transfer did not complete
+ */
+public record UsbTransferResult(UsbTransferStatus status, int transferred) {
+    /**
+     * Checks if the transfer completed.
+     *
+     * @return True if the status is {@link UsbTransferStatus#COMPLETED}
+     */
+    public boolean completed() {
+        return status == UsbTransferStatus.COMPLETED;
+    }
+}
@@ -0,0 +1,35 @@
+package net.gudenau.jusb;
+
+/**
+ * The completion status of a USB transfer.
+ */
+public enum UsbTransferStatus {
+    /**
+     * The transfer completed without error, this does not mean that all requested data was transferred.
+     */
+    COMPLETED,
+    /**
+     * The transfer failed.
+     */
+    ERROR,
+    /**
+     * The transfer timed out.
+     */
+    TIMED_OUT,
+    /**
+     * The transfer was cancelled.
+     */
+    CANCELLED,
+    /**
+     * The endpoint stalled or a control request was not supported by the device.
+     */
+    STALL,
+    /**
+     * The device was disconnected.
+     */
+    NO_DEVICE,
+    /**
+     * The device sent more data than was requested.
+     */
+    OVERFLOW,
+}
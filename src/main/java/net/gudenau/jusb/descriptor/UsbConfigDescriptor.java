@@ -1,13 +1,13 @@
 package net.gudenau.jusb.descriptor;
 
-import net.gudenau.jusb.internal.libusb.descriptor.LibUsbConfigDescriptor;
+import net.gudenau.jusb.internal.UsbConfigDescriptorImpl;
 
 import java.util.List;
 
 /**
  * A USB configuration descriptor.
  */
-public sealed interface UsbConfigDescriptor extends AutoCloseable, UsbDescriptor permits LibUsbConfigDescriptor {
+public sealed interface UsbConfigDescriptor extends AutoCloseable, UsbDescriptor permits UsbConfigDescriptorImpl {
     /**
      * A reserved attribute from {@link #bmAttributes()}, it should always be set.
      */
@@ -74,7 +74,7 @@ public sealed interface UsbConfigDescriptor extends AutoCloseable, UsbDescriptor
     List<UsbInterface> interfaces();
 
     /**
-     * Frees the native memory used by this interface.
+     * Does nothing, descriptors are copied to the heap and hold no native memory.
      */
     @Override void close();
 }
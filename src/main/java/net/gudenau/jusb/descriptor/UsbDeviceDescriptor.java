@@ -1,11 +1,11 @@
 package net.gudenau.jusb.descriptor;
 
-import net.gudenau.jusb.internal.libusb.descriptor.LibUsbDeviceDescriptor;
+import net.gudenau.jusb.internal.UsbDeviceDescriptorImpl;
 
 /**
  * A USB device descriptor.
  */
-public sealed interface UsbDeviceDescriptor extends UsbDescriptor permits LibUsbDeviceDescriptor {
+public sealed interface UsbDeviceDescriptor extends UsbDescriptor permits UsbDeviceDescriptorImpl {
     /**
      * The USB specification number that this device complies with.
      *
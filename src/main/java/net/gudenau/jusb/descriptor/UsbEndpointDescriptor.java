@@ -1,13 +1,13 @@
 package net.gudenau.jusb.descriptor;
 
 import net.gudenau.jusb.UsbDirection;
+import net.gudenau.jusb.internal.UsbEndpointDescriptorImpl;
 import net.gudenau.jusb.internal.libusb.LibUsb;
-import net.gudenau.jusb.internal.libusb.descriptor.LibUsbEndpointDescriptor;
 
 /**
  * A USB endpoint descriptor.
  */
-public sealed interface UsbEndpointDescriptor extends UsbDescriptor permits LibUsbEndpointDescriptor {
+public sealed interface UsbEndpointDescriptor extends UsbDescriptor permits UsbEndpointDescriptorImpl {
     //TODO iso flags
     /**
      * The mask used to extract the transfer from the attributes.
@@ -1,13 +1,13 @@
 package net.gudenau.jusb.descriptor;
 
-import net.gudenau.jusb.internal.libusb.descriptor.LibUsbInterface;
+import net.gudenau.jusb.internal.UsbInterfaceImpl;
 
 import java.util.List;
 
 /**
  * A container for interface descriptor alt settings.
  */
-public sealed interface UsbInterface permits LibUsbInterface {
+public sealed interface UsbInterface permits UsbInterfaceImpl {
     /**
      * The alt settings for this interface.
      *
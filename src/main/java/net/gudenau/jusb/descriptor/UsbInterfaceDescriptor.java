@@ -1,13 +1,13 @@
 package net.gudenau.jusb.descriptor;
 
-import net.gudenau.jusb.internal.libusb.descriptor.LibUsbInterfaceDescriptor;
+import net.gudenau.jusb.internal.UsbInterfaceDescriptorImpl;
 
 import java.util.List;
 
 /**
  * A USB interface descriptor.
  */
-public sealed interface UsbInterfaceDescriptor extends UsbDescriptor permits LibUsbInterfaceDescriptor {
+public sealed interface UsbInterfaceDescriptor extends UsbDescriptor permits UsbInterfaceDescriptorImpl {
     /**
      * Gets the number of this interface.
      *
@@ -0,0 +1,114 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Performs "synchronous" transfers through the event thread, the calling thread is parked instead of blocking inside
+ * of a native call. This keeps virtual threads from pinning their carrier for the duration of a transfer.
+ * <p>
+ * The results mirror the synchronous libusb functions so callers can treat both paths the same.
+ */
+final class BlockingTransfer implements UsbAsyncTransferImpl.Completion, AutoCloseable {
+    private final UsbAsyncTransferImpl transfer;
+    private volatile Thread waiter;
+    private volatile boolean done;
+    private int status;
+    private int length;
+
+    BlockingTransfer(UsbDeviceHandleImpl handle) throws UsbException {
+        transfer = handle.createTransfer();
+        transfer.completion(this);
+    }
+
+    @Override
+    public void complete(int status, int length) {
+        this.status = status;
+        this.length = length;
+        // Volatile write, publishes status and length to the waiter
+        done = true;
+        LockSupport.unpark(waiter);
+    }
+
+    /**
+     * Performs a bulk or interrupt transfer, see {@code libusb_bulk_transfer}.
+     *
+     * @param type The libusb transfer type
+     * @param endpoint The endpoint address
+     * @param data The data buffer
+     * @param timeout The timeout in milliseconds
+     * @return The libusb error code, the transferred length is available from {@link #transferred()}
+     */
+    int transfer(int type, byte endpoint, MemorySegment data, int timeout) {
+        transfer.configure((byte) type, endpoint, timeout);
+        transfer.buffer(data);
+        return toError(submitAndAwait());
+    }
+
+    /**
+     * Performs a control transfer, see {@code libusb_control_transfer}. The setup packet is built by the transfer.
+     *
+     * @return The amount of data transferred or a negative libusb error code
+     */
+    int controlTransfer(byte requestType, byte request, short value, short index, MemorySegment data, short wLength, int timeout) {
+        transfer.controlTransfer(requestType, request, value, index, data, 0, Short.toUnsignedInt(wLength), Integer.toUnsignedLong(timeout));
+        var result = toError(submitAndAwait());
+        return result == LibUsb.LIBUSB_SUCCESS ? length : result;
+    }
+
+    int transferred() {
+        return length;
+    }
+
+    // Returns the transfer status, or the negative libusb error when the transfer could not be submitted
+    private int submitAndAwait() {
+        done = false;
+        waiter = Thread.currentThread();
+        var result = transfer.submitInternal();
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            waiter = null;
+            length = 0;
+            return result;
+        }
+
+        // The transfer references the caller's buffer, so an interrupt cancels it but still waits for it to finish.
+        boolean interrupted = false;
+        while(!done) {
+            LockSupport.park(this);
+            if(Thread.interrupted()) {
+                interrupted = true;
+                transfer.cancel();
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        waiter = null;
+        return status;
+    }
+
+    // Maps a transfer status to the error the synchronous libusb functions would return, submission errors are negative
+    // libusb errors already and passed through as they are.
+    private static int toError(int status) {
+        if(status < 0) {
+            return status;
+        }
+        return switch(status) {
+            case LibUsb.LIBUSB_TRANSFER_COMPLETED -> LibUsb.LIBUSB_SUCCESS;
+            case LibUsb.LIBUSB_TRANSFER_TIMED_OUT -> LibUsb.LIBUSB_ERROR_TIMEOUT;
+            case LibUsb.LIBUSB_TRANSFER_STALL -> LibUsb.LIBUSB_ERROR_PIPE;
+            case LibUsb.LIBUSB_TRANSFER_OVERFLOW -> LibUsb.LIBUSB_ERROR_OVERFLOW;
+            case LibUsb.LIBUSB_TRANSFER_NO_DEVICE -> LibUsb.LIBUSB_ERROR_NO_DEVICE;
+            case LibUsb.LIBUSB_TRANSFER_CANCELLED -> LibUsb.LIBUSB_ERROR_INTERRUPTED;
+            default -> LibUsb.LIBUSB_ERROR_IO;
+        };
+    }
+
+    @Override
+    public void close() throws UsbException {
+        transfer.close();
+    }
+}
@@ -0,0 +1,68 @@
+package net.gudenau.jusb.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands transfer completions from the event thread to the user's executor.
+ * <p>
+ * Completions are queued and drained in batches by a single task, so the event thread only pays for a queue insert in
+ * the common case and completions are delivered in the order the transfers finished. The other side of this is that a
+ * slow completion delays the ones queued behind it.
+ */
+final class CompletionQueue {
+    private final Executor executor;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = this::drain;
+
+    /**
+     * @param executor The executor to run completions on or null to run them on the event thread
+     */
+    CompletionQueue(Executor executor) {
+        this.executor = executor;
+    }
+
+    void dispatch(Runnable completion) {
+        if(executor == null) {
+            run(completion);
+            return;
+        }
+
+        queue.offer(completion);
+        schedule();
+    }
+
+    private void schedule() {
+        if(!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch(RejectedExecutionException e) {
+                // The executor was shut down, completions must not be lost so they run here instead
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        Runnable completion;
+        while((completion = queue.poll()) != null) {
+            run(completion);
+        }
+        scheduled.set(false);
+        // Completions queued after the last poll but before the flag was cleared would be stranded otherwise
+        schedule();
+    }
+
+    private static void run(Runnable completion) {
+        try {
+            completion.run();
+        } catch(Throwable t) {
+            var thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbDevice;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+import net.gudenau.jusb.internal.libusb.LibUsbDevice;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one {@link UsbDeviceImpl} per connected device, keyed by the address of the libusb device.
+ * <p>
+ * The registry holds a reference to every device it knows about, so libusb keeps the device alive and its address
+ * can't be reused for another device. libusb keeps a reference of its own to every connected device anyway, so this
+ * doesn't keep a device around for any longer. Devices that are no longer listed by libusb are retired and the
+ * reference is dropped. Every device returned from {@link #update(MemorySegment, int)} carries an additional reference
+ * for the caller, released by {@link UsbDeviceImpl#close()}.
+ */
+final class DeviceRegistry {
+    private final JUsbImpl usb;
+    private final Map<Long, UsbDeviceImpl> devices = new HashMap<>();
+    // Disconnected devices callers might still hold references to, they have to be released before libusb exits
+    private final List<UsbDeviceImpl> retired = new ArrayList<>();
+    private int generation;
+    
+    DeviceRegistry(JUsbImpl usb) {
+        this.usb = usb;
+    }
+    
+    /**
+     * Updates the registry from a device list returned by {@code libusb_get_device_list}.
+     *
+     * @param list The device list
+     * @param count The amount of devices in the list
+     * @return The devices of the list, each with a reference for the caller
+     */
+    synchronized List<UsbDevice> update(MemorySegment list, int count) {
+        var generation = ++this.generation;
+        var result = new ArrayList<UsbDevice>(count);
+        for(int i = 0; i < count; i++) {
+            var device = lookup(list.getAtIndex(ValueLayout.ADDRESS, i));
+            device.generation = generation;
+            device.acquire();
+            result.add(device);
+        }
+        
+        // Anything that wasn't listed anymore was disconnected
+        var iterator = devices.values().iterator();
+        while(iterator.hasNext()) {
+            var device = iterator.next();
+            if(device.generation != generation) {
+                iterator.remove();
+                retire(device);
+            }
+        }
+        retired.removeIf((device) -> !device.referenced());
+        return Collections.unmodifiableList(result);
+    }
+    
+    /**
+     * Gets the device for a libusb device, registering it if it is not known yet.
+     *
+     * @param pointer The libusb device
+     * @return The device
+     */
+    synchronized UsbDeviceImpl get(MemorySegment pointer) {
+        var device = lookup(pointer);
+        device.generation = generation;
+        return device;
+    }
+    
+    private UsbDeviceImpl lookup(MemorySegment pointer) {
+        var device = devices.get(pointer.address());
+        if(device == null) {
+            device = new UsbDeviceImpl(usb, LibUsb.libusb_ref_device(new LibUsbDevice(pointer)));
+            devices.put(pointer.address(), device);
+        }
+        return device;
+    }
+    
+    /**
+     * Retires the device for a libusb device, used when a device was unplugged.
+     *
+     * @param pointer The libusb device
+     */
+    synchronized void retire(MemorySegment pointer) {
+        var device = devices.remove(pointer.address());
+        if(device != null) {
+            retire(device);
+        }
+    }
+    
+    private void retire(UsbDeviceImpl device) {
+        device.retire();
+        if(device.referenced()) {
+            retired.add(device);
+        }
+    }
+    
+    synchronized void close() {
+        for(var device : devices.values()) {
+            device.release();
+        }
+        devices.clear();
+        for(var device : retired) {
+            device.release();
+        }
+        retired.clear();
+    }
+}
@@ -3,26 +3,28 @@ package net.gudenau.jusb.internal;
 import net.gudenau.jusb.DeviceHotplugCallback;
 import net.gudenau.jusb.JUsb;
 import net.gudenau.jusb.UsbDevice;
+import net.gudenau.jusb.UsbEventLoop;
 import net.gudenau.jusb.UsbException;
 import net.gudenau.jusb.internal.libusb.*;
 
 import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public final class JUsbImpl implements JUsb {
-    public static JUsbImpl init(Set<Option> options, Set<DeviceHotplugCallback> hotplugCallbacks) throws UsbException {
+    public static JUsbImpl init(Set<Option> options, Set<DeviceHotplugCallback> hotplugCallbacks, Executor completionExecutor) throws UsbException {
         var context = new LibUsbContext();
         var result = LibUsb.libusb_init(context);
         if(result != LibUsb.LIBUSB_SUCCESS) {
-            throw new UsbException("Failed to initialize libusb: " + LibUsb.libusb_error_name(result));
+            throw new UsbException("Failed to initialize libusb: " + Utils.errorName(result));
         }
         
         try {
-            return new JUsbImpl(context, options, hotplugCallbacks);
+            return new JUsbImpl(context, options, hotplugCallbacks, completionExecutor);
         } catch(Throwable t) {
             LibUsb.libusb_exit(context);
             throw t;
@@ -34,6 +36,7 @@ public final class JUsbImpl implements JUsb {
             case ENABLE_ASYNC -> true;
             case ENABLE_HOTPLUG -> LibUsb.libusb_has_capability(LibUsb.LIBUSB_CAP_HAS_HOTPLUG);
             case ENABLE_DETACH -> LibUsb.libusb_has_capability(LibUsb.LIBUSB_CAP_SUPPORTS_DETACH_KERNEL_DRIVER);
+            case EXTERNAL_EVENTS -> OperatingSystem.OPERATING_SYSTEM != OperatingSystem.WINDOWS;
         };
     }
     
@@ -47,9 +50,14 @@ public final class JUsbImpl implements JUsb {
     private final int hotplugHandle;
     private final Thread eventThread;
     private final MemorySegment eventThreadRunning;
+    private final CompletionQueue completions;
+    private final UsbEventLoopImpl eventLoop;
+    private final Set<UsbDeviceHandleImpl> handles = ConcurrentHashMap.newKeySet();
+    private final DeviceRegistry registry = new DeviceRegistry(this);
     
-    private JUsbImpl(LibUsbContext context, Set<Option> options, Set<DeviceHotplugCallback> hotplugCallbacks) {
+    private JUsbImpl(LibUsbContext context, Set<Option> options, Set<DeviceHotplugCallback> hotplugCallbacks, Executor completionExecutor) {
         this.context = context;
+        this.completions = new CompletionQueue(completionExecutor);
     
         enableAsync = options.contains(Option.ENABLE_ASYNC);
         enableHotplug = options.contains(Option.ENABLE_HOTPLUG);
@@ -58,13 +66,17 @@ public final class JUsbImpl implements JUsb {
         if(enableHotplug && !hotplugCallbacks.isEmpty()) {
             this.hotplugCallbacks = hotplugCallbacks;
             this.hotplugCallback = LibUsbHotplugCallback.allocate((ctx, device, event, user_data) -> {
+                var usbDevice = registry.get(device.address());
                 for(var callback : this.hotplugCallbacks) {
-                    callback.invoke(new UsbDeviceImpl(this, device), switch(event) {
+                    callback.invoke(usbDevice, switch(event) {
                         case LibUsb.LIBUSB_HOTPLUG_EVENT_DEVICE_ARRIVED -> DeviceHotplugCallback.Event.ARRIVED;
                         case LibUsb.LIBUSB_HOTPLUG_EVENT_DEVICE_LEFT -> DeviceHotplugCallback.Event.LEFT;
                         default -> throw new IllegalStateException("libusb passed an unexpected event value to the hotplug callback handler: " + event);
                     });
                 }
+                if(event == LibUsb.LIBUSB_HOTPLUG_EVENT_DEVICE_LEFT) {
+                    registry.retire(device.address());
+                }
                 return false;
             }, session.get().scope());
             
@@ -89,7 +101,13 @@ public final class JUsbImpl implements JUsb {
             this.hotplugHandle = -1;
         }
         
-        if(enableHotplug || enableAsync) {
+        if(options.contains(Option.EXTERNAL_EVENTS)) {
+            eventLoop = new UsbEventLoopImpl(context, session.get().scope());
+        } else {
+            eventLoop = null;
+        }
+        
+        if((enableHotplug || enableAsync) && eventLoop == null) {
             eventThreadRunning = session.get().allocate(ValueLayout.JAVA_INT);
             eventThreadRunning.set(ValueLayout.JAVA_INT, 0, 0);
             
@@ -118,29 +136,38 @@ public final class JUsbImpl implements JUsb {
             var pointer = session.allocate(ValueLayout.ADDRESS);
             var result = LibUsb.libusb_get_device_list(context, pointer);
             if(result <= 0) {
-                throw new UsbException("Failed to get device list: " + LibUsb.libusb_error_name((int) result));
+                throw new UsbException("Failed to get device list: " + Utils.errorName((int) result));
             }
             pointer = pointer.get(ValueLayout.ADDRESS, 0);
             pointer = MemorySegment.ofAddress(pointer.address(), result * ValueLayout.ADDRESS.byteSize(), pointer.scope());
     
-            List<UsbDevice> devices;
             try {
-                int deviceCount = (int) Math.min(Integer.MAX_VALUE, result);
-                devices = new ArrayList<>(deviceCount);
-                for(int i = 0; i < deviceCount; i++) {
-                    devices.add(new UsbDeviceImpl(this, new LibUsbDevice(pointer.getAtIndex(ValueLayout.ADDRESS, i))));
-                }
-            } catch(Throwable t) {
+                // The registry takes its own references, known devices are reused
+                return registry.update(pointer, (int) Math.min(Integer.MAX_VALUE, result));
+            } finally {
                 LibUsb.libusb_free_device_list(pointer, true);
-                throw t;
             }
-            LibUsb.libusb_free_device_list(pointer, false);
-            return devices;
         }
     }
     
+    @Override
+    public UsbEventLoop eventLoop() {
+        if(eventLoop == null) {
+            throw new IllegalStateException("Can not get the event loop without EXTERNAL_EVENTS");
+        }
+        return eventLoop;
+    }
+    
     @Override
     public void close() throws UsbException {
+        // Cancels and waits for the in-flight transfers while events are still handled
+        for(var handle : handles) {
+            handle.close();
+        }
+        registry.close();
+        if(eventLoop != null) {
+            eventLoop.close();
+        }
         if(eventThread != null) {
             eventThreadRunning.set(ValueLayout.JAVA_INT, 0, 1);
         }
@@ -165,4 +192,29 @@ public final class JUsbImpl implements JUsb {
     public boolean enableAsync() {
         return enableAsync;
     }
+    
+    void register(UsbDeviceHandleImpl handle) {
+        handles.add(handle);
+    }
+    
+    void unregister(UsbDeviceHandleImpl handle) {
+        handles.remove(handle);
+    }
+    
+    // Handles pending events when the application drives them, used while waiting for transfers to finish
+    void driveEvents() {
+        if(eventLoop != null) {
+            try {
+                eventLoop.handleEvents();
+            } catch(UsbException ignored) {}
+        }
+    }
+    
+    CompletionQueue completions() {
+        return completions;
+    }
+    
+    public boolean isEventThread() {
+        return Thread.currentThread() == eventThread || (eventLoop != null && eventLoop.isHandlingThread());
+    }
 }
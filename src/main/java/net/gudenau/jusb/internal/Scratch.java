@@ -0,0 +1,31 @@
+package net.gudenau.jusb.internal;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentScope;
+
+/**
+ * Per-thread native scratch memory for out-parameters and small buffers of synchronous calls, so the hot paths don't
+ * have to open an arena for every call.
+ * <p>
+ * The memory is only valid until the next call that uses it on the same thread, it must never be handed to anything
+ * that outlives the current call.
+ */
+final class Scratch {
+    /**
+     * The size of the scratch memory, large enough for any descriptor.
+     */
+    static final long SIZE = 256;
+    
+    // Freed by the GC along with the thread
+    private static final ThreadLocal<MemorySegment> SCRATCH = ThreadLocal.withInitial(() ->
+        MemorySegment.allocateNative(SIZE, 8, SegmentScope.auto())
+    );
+    
+    private Scratch() {
+        throw new AssertionError();
+    }
+    
+    static MemorySegment get() {
+        return SCRATCH.get();
+    }
+}
@@ -0,0 +1,71 @@
+package net.gudenau.jusb.internal;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentScope;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A pool of native staging buffers for transfers of heap memory, libusb can only work with native memory.
+ * <p>
+ * Buffers are grouped into power of two size classes, so the repeated transfers of an endpoint keep reusing the same
+ * few buffers. Buffers that are larger than the biggest class are not pooled.
+ */
+final class StagingPool {
+    private static final int MIN_SHIFT = 9;
+    private static final int MAX_SHIFT = 24;
+    private static final int CLASS_COUNT = MAX_SHIFT - MIN_SHIFT + 1;
+    private static final int MAX_POOLED = 4;
+
+    @SuppressWarnings("unchecked")
+    private final Queue<MemorySegment>[] pools = new Queue[CLASS_COUNT];
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(CLASS_COUNT);
+
+    StagingPool() {
+        for(int i = 0; i < CLASS_COUNT; i++) {
+            pools[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Gets a buffer of at least {@code size} bytes, it has to be returned via {@link #release(MemorySegment)}.
+     *
+     * @param size The minimum size of the buffer
+     * @return The buffer
+     */
+    MemorySegment acquire(long size) {
+        int sizeClass = sizeClass(size);
+        if(sizeClass >= CLASS_COUNT) {
+            return MemorySegment.allocateNative(size, 8, SegmentScope.auto());
+        }
+
+        var segment = pools[sizeClass].poll();
+        if(segment != null) {
+            counts.decrementAndGet(sizeClass);
+            return segment;
+        }
+        // The pool may drop buffers, so they are left to the GC instead of an arena
+        return MemorySegment.allocateNative(1L << (sizeClass + MIN_SHIFT), 8, SegmentScope.auto());
+    }
+
+    void release(MemorySegment segment) {
+        int sizeClass = sizeClass(segment.byteSize());
+        if(sizeClass >= CLASS_COUNT || segment.byteSize() != 1L << (sizeClass + MIN_SHIFT)) {
+            return;
+        }
+
+        if(counts.incrementAndGet(sizeClass) <= MAX_POOLED) {
+            pools[sizeClass].offer(segment);
+        } else {
+            counts.decrementAndGet(sizeClass);
+        }
+    }
+
+    private static int sizeClass(long size) {
+        if(size <= 1L << MIN_SHIFT) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+}
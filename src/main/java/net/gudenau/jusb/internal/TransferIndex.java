@@ -0,0 +1,103 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.internal.libusb.LibUsbTransfer;
+import net.gudenau.jusb.internal.libusb.LibUsbTransferCallback;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentScope;
+import java.util.Arrays;
+
+/**
+ * A process-wide index of live {@link UsbAsyncTransferImpl}s.
+ * <p>
+ * Every transfer shares a single completion upcall stub, the transfer is found again by storing its index in the
+ * {@code user_data} field of the native transfer.
+ */
+final class TransferIndex {
+    /**
+     * The shared completion callback for all transfers.
+     */
+    static final MemorySegment CALLBACK = LibUsbTransferCallback.allocate(new Dispatcher(), SegmentScope.global());
+
+    private static final Object LOCK = new Object();
+
+    // Index 0 is never used so that a NULL user_data can't resolve to a transfer.
+    private static volatile UsbAsyncTransferImpl[] transfers = new UsbAsyncTransferImpl[64];
+    private static int[] freeIds = new int[64];
+    private static int freeCount = 0;
+    private static int nextId = 1;
+
+    /**
+     * Adds a transfer to the index.
+     *
+     * @param transfer The transfer to add
+     * @return The id of the transfer
+     */
+    static int register(UsbAsyncTransferImpl transfer) {
+        synchronized(LOCK) {
+            int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+            var transfers = TransferIndex.transfers;
+            if(id >= transfers.length) {
+                transfers = Arrays.copyOf(transfers, transfers.length << 1);
+            }
+            transfers[id] = transfer;
+            // Volatile write publishes the new entry to the event thread.
+            TransferIndex.transfers = transfers;
+            return id;
+        }
+    }
+
+    /**
+     * Removes a transfer from the index, the id may be reused after this call.
+     *
+     * @param id The id of the transfer
+     */
+    static void unregister(int id) {
+        synchronized(LOCK) {
+            var transfers = TransferIndex.transfers;
+            transfers[id] = null;
+            TransferIndex.transfers = transfers;
+            if(freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeIds.length << 1);
+            }
+            freeIds[freeCount++] = id;
+        }
+    }
+
+    /**
+     * Gets a transfer from the index.
+     *
+     * @param id The id of the transfer
+     * @return The transfer or null if it isn't registered
+     */
+    static UsbAsyncTransferImpl lookup(long id) {
+        var transfers = TransferIndex.transfers;
+        return id > 0 && id < transfers.length ? transfers[(int) id] : null;
+    }
+
+    private static final class Dispatcher implements LibUsbTransferCallback {
+        @Override
+        public void invoke(LibUsbTransfer transfer) {
+            invoke(transfer.segment());
+        }
+
+        // Overridden directly so the upcall never creates a LibUsbTransfer.
+        @Override
+        public void invoke(MemorySegment segment) {
+            try {
+                var transfer = lookup(LibUsbTransfer.user_data$address(segment));
+                if(transfer != null) {
+                    transfer.complete();
+                }
+            } catch(Throwable t) {
+                // Throwing from an upcall kills the JVM.
+                var thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
+    }
+
+    private TransferIndex() {
+        throw new AssertionError();
+    }
+}
@@ -3,135 +3,713 @@ package net.gudenau.jusb.internal;
 import net.gudenau.jusb.UsbAsyncTransfer;
 import net.gudenau.jusb.UsbDirection;
 import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.UsbTimeoutException;
+import net.gudenau.jusb.UsbTransferStatus;
 import net.gudenau.jusb.internal.libusb.LibUsb;
 import net.gudenau.jusb.internal.libusb.LibUsbTransfer;
-import net.gudenau.jusb.internal.libusb.LibUsbTransferCallback;
 
-import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentScope;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeoutException;
 
 import static net.gudenau.jusb.internal.Utils.clampToUnsignedInt;
 import static net.gudenau.jusb.internal.Utils.endpoint;
+import static net.gudenau.jusb.internal.Utils.fillControlSetup;
+import static net.gudenau.jusb.internal.Utils.transferStatus;
 
 public final class UsbAsyncTransferImpl implements UsbAsyncTransfer {
+    // The states of a transfer. Only the thread that moved a transfer out of IDLE or IN_FLIGHT may touch its fields or
+    // the native transfer, so submitting and completing never wait on a lock.
+    private static final int IDLE = 0;
+    // A thread is configuring, reading or submitting the transfer
+    private static final int CLAIMED = 1;
+    private static final int IN_FLIGHT = 2;
+    // The event thread is collecting the result
+    private static final int COMPLETING = 3;
+    // A thread is asking libusb to cancel the transfer
+    private static final int CANCELLING = 4;
+    // Closed while in-flight, freed once the completion arrives
+    private static final int CLOSING = 5;
+    private static final int CLOSED = 6;
+    
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(UsbAsyncTransferImpl.class, "state", int.class);
+        } catch(ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to find transfer state", e);
+        }
+    }
+    
+    private final UsbDeviceHandleImpl handle;
     private final LibUsbTransfer transfer;
-    private final Arena session;
-    private volatile MemorySegment segment;
-    private volatile CompletableFuture<Result> future;
-    private volatile boolean closed;
+    private final int isoPackets;
+    private final int id;
+    private volatile int state = IDLE;
+    private MemorySegment segment;
+    // Native copy of a heap buffer
+    private MemorySegment staging;
+    // Setup packet and data stage of control transfers built by this transfer
+    private MemorySegment control;
+    private boolean setup;
+    private CompletableFuture<Result> future;
+    private CompletableFuture<UsbTransferStatus> statusFuture;
+    private Completion completion;
+    private Listener listener;
+    // Invoked once the current submission is over
+    private Runnable idle;
     
-    public UsbAsyncTransferImpl(UsbDeviceHandleImpl handle, LibUsbTransfer transfer) {
+    public UsbAsyncTransferImpl(UsbDeviceHandleImpl handle, LibUsbTransfer transfer, int isoPackets) {
+        this.handle = handle;
         this.transfer = transfer;
-        
-        session = Arena.openShared();
-        var callback = LibUsbTransferCallback.allocate((callbackTransfer) -> {
-            synchronized(this) {
-                var status = callbackTransfer.status();
-                
-                switch(status) {
-                    case LibUsb.LIBUSB_TRANSFER_COMPLETED -> {
-                        var segment = this.segment.asSlice(0, transfer.actual_length());
-                        future.complete(new Result(segment.asByteBuffer(), false));
-                    }
-                    
-                    case LibUsb.LIBUSB_TRANSFER_TIMED_OUT -> future.completeExceptionally(new TimeoutException("Usb transfer timed out"));
-                    
-                    case LibUsb.LIBUSB_TRANSFER_CANCELLED -> future.cancel(true);
-                    
-                    case LibUsb.LIBUSB_TRANSFER_STALL -> future.complete(new Result(null, true));
-                    
-                    default -> future.completeExceptionally(new UsbException("Failed to complete transfer: " + LibUsb.libusb_error_name(status)));
-                }
-                
-                future = null;
-            }
-        }, session.scope());
+        this.isoPackets = isoPackets;
+        id = TransferIndex.register(this);
+        handle.register(this);
         
         transfer.segment().fill((byte) 0);
         transfer.dev_handle(handle.handle())
-            .callback(callback);
+            .callback(TransferIndex.CALLBACK)
+            .user_data(MemorySegment.ofAddress(id));
+    }
+    
+    UsbDeviceHandleImpl handle() {
+        return handle;
+    }
+    
+    // Invoked by the shared callback in TransferIndex on the event thread
+    void complete() {
+        boolean closing;
+        while(true) {
+            int state = this.state;
+            if(state == IN_FLIGHT && STATE.compareAndSet(this, IN_FLIGHT, COMPLETING)) {
+                closing = false;
+                break;
+            } else if(state == CLOSING) {
+                closing = true;
+                break;
+            }
+            // libusb can finish a transfer before the submitting or cancelling thread is done with it
+            Thread.onSpinWait();
+        }
+        
+        unstage();
+        var status = transfer.status();
+        var length = transfer.actual_length();
+        var buffer = segment;
+        var completion = this.completion;
+        var listener = this.listener;
+        var action = completion == null && listener == null ? completeFuture() : null;
+        var idle = this.idle;
+        this.idle = null;
+        if(!closing) {
+            // Handed back before the completion runs so it can resubmit the transfer
+            this.state = IDLE;
+        }
+        
+        try {
+            if(completion != null) {
+                completion.complete(status, length);
+            } else if(listener != null) {
+                notify(listener, status, length, buffer);
+            } else {
+                // User continuations are chained to the future, so it gets completed via the completion executor
+                handle.usb().completions().dispatch(action);
+            }
+            if(idle != null) {
+                idle.run();
+            }
+        } finally {
+            if(closing) {
+                free();
+                this.state = CLOSED;
+            }
+            handle.transferCompleted();
+        }
+    }
+    
+    private void notify(Listener listener, int status, int length, MemorySegment buffer) {
+        try {
+            listener.complete(this, transferStatus(status), length, buffer);
+        } catch(Throwable t) {
+            // Nothing may propagate into the upcall
+            var thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+    
+    // Only call this while completing
+    private Runnable completeFuture() {
+        var status = transfer.status();
+        var statusFuture = this.statusFuture;
+        if(statusFuture != null) {
+            this.statusFuture = null;
+            var result = transferStatus(status);
+            return () -> statusFuture.complete(result);
+        }
+        
+        var future = this.future;
+        this.future = null;
+        
+        return switch(status) {
+            case LibUsb.LIBUSB_TRANSFER_COMPLETED -> {
+                // actual_length isn't valid for isochronous transfers, the packets have to be checked instead
+                var length = transfer.type() == LibUsb.LIBUSB_TRANSFER_TYPE_ISOCHRONOUS ? transfer.length() : transfer.actual_length();
+                var result = new Result(segment.asSlice(0, length).asByteBuffer(), false);
+                yield () -> future.complete(result);
+            }
+            
+            case LibUsb.LIBUSB_TRANSFER_TIMED_OUT -> {
+                // Keep the data that made it before the timeout
+                var length = transfer.type() == LibUsb.LIBUSB_TRANSFER_TYPE_ISOCHRONOUS ? 0 : transfer.actual_length();
+                var exception = new UsbTimeoutException("Usb transfer timed out", length, segment.asSlice(0, length).asByteBuffer());
+                yield () -> future.completeExceptionally(exception);
+            }
+            
+            case LibUsb.LIBUSB_TRANSFER_CANCELLED -> () -> future.cancel(true);
+            
+            case LibUsb.LIBUSB_TRANSFER_STALL -> () -> future.complete(new Result(null, true));
+            
+            default -> () -> future.completeExceptionally(new UsbException("Failed to complete transfer: " + transferStatus(status)));
+        };
     }
     
     @Override
     public void bulkTransfer(int endpoint, UsbDirection direction, long timeout) {
         Objects.requireNonNull(direction, "direction can't be null");
-        synchronized(this) {
-            validateMutableState();
+        claim("modify");
+        try {
+            leaveSetup();
             transfer.endpoint(endpoint(endpoint, direction))
                 .type((byte) LibUsb.LIBUSB_TRANSFER_TYPE_BULK)
-                .timeout(clampToUnsignedInt(timeout));
+                .timeout(clampToUnsignedInt(timeout))
+                .num_iso_packets(0);
+        } finally {
+            release();
         }
     }
     
     @Override
     public void interruptTransfer(int endpoint, UsbDirection direction, long timeout) {
         Objects.requireNonNull(direction, "direction can't be null");
-        synchronized(this) {
-            validateMutableState();
+        claim("modify");
+        try {
+            leaveSetup();
             transfer.endpoint(endpoint(endpoint, direction))
                 .type((byte) LibUsb.LIBUSB_TRANSFER_TYPE_INTERRUPT)
-                .timeout(clampToUnsignedInt(timeout));
+                .timeout(clampToUnsignedInt(timeout))
+                .num_iso_packets(0);
+        } finally {
+            release();
+        }
+    }
+    
+    @Override
+    public void bulkStreamTransfer(int endpoint, UsbDirection direction, int streamId, long timeout) {
+        Objects.requireNonNull(direction, "direction can't be null");
+        claim("modify");
+        try {
+            leaveSetup();
+            transfer.endpoint(endpoint(endpoint, direction))
+                .type((byte) LibUsb.LIBUSB_TRANSFER_TYPE_BULK_STREAM)
+                .timeout(clampToUnsignedInt(timeout))
+                .num_iso_packets(0);
+            LibUsb.libusb_transfer_set_stream_id(transfer, streamId);
+        } finally {
+            release();
         }
     }
     
     @Override
     public void controlTransfer(long timeout) {
-        synchronized(this) {
-            validateMutableState();
+        claim("modify");
+        try {
+            leaveSetup();
+            transfer.endpoint((byte) 0)
+                .type((byte) LibUsb.LIBUSB_TRANSFER_TYPE_CONTROL)
+                .timeout(clampToUnsignedInt(timeout))
+                .num_iso_packets(0);
+        } finally {
+            release();
+        }
+    }
+    
+    @Override
+    public void controlTransfer(int requestType, int request, int value, int index, MemorySegment segment, long offset, int length, long timeout) {
+        Objects.requireNonNull(segment, "segment can't be null");
+        if(length < 0 || length > 0xFFFF) {
+            throw new IllegalArgumentException("length must be between 0 and 65535, was " + length);
+        }
+        var data = segment.asSlice(offset, length);
+        var size = LibUsb.LIBUSB_CONTROL_SETUP_SIZE + length;
+        
+        claim("modify");
+        try {
+            // The setup packet is followed by the data stage, the data is copied in and out around each submission
+            if(control == null || control.byteSize() < size) {
+                control = MemorySegment.allocateNative(Math.max(size, 64), 8, SegmentScope.auto());
+            }
+            fillControlSetup(control, requestType, request, value, index, length);
+            releaseStaging();
+            this.segment = data;
+            setup = true;
             transfer.endpoint((byte) 0)
                 .type((byte) LibUsb.LIBUSB_TRANSFER_TYPE_CONTROL)
-                .timeout(clampToUnsignedInt(timeout));
+                .timeout(clampToUnsignedInt(timeout))
+                .num_iso_packets(0)
+                .buffer(control)
+                .length(size);
+        } finally {
+            release();
+        }
+    }
+    
+    // Switches back from a setup packet built by this transfer to the raw buffer, only call this while owning the transfer
+    private void leaveSetup() {
+        if(setup) {
+            setup = false;
+            applyBuffer(segment);
+        }
+    }
+    
+    /**
+     * Sets up a non-isochronous transfer from raw libusb values, used by the internal blocking paths.
+     *
+     * @param type The libusb transfer type
+     * @param endpoint The endpoint address, including the direction bit
+     * @param timeout The timeout in milliseconds
+     */
+    void configure(byte type, byte endpoint, int timeout) {
+        claim("modify");
+        try {
+            leaveSetup();
+            transfer.endpoint(endpoint)
+                .type(type)
+                .timeout(timeout)
+                .num_iso_packets(0);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void isochronousTransfer(int endpoint, UsbDirection direction, int packets, int packetLength, long timeout) {
+        Objects.requireNonNull(direction, "direction can't be null");
+        if(packets <= 0 || packets > isoPackets) {
+            throw new IllegalArgumentException("packets must be between 1 and " + isoPackets + ", was " + packets);
+        }
+        if(packetLength <= 0) {
+            throw new IllegalArgumentException("packetLength must be positive");
+        }
+        // libusb hands the packet lengths to the kernel as is, they must not run past the end of the buffer
+        var total = (long) packets * packetLength;
+        claim("modify");
+        try {
+            leaveSetup();
+            if(segment == null) {
+                throw new IllegalStateException("Can not configure an isochronous transfer without a buffer");
+            }
+            if(total > segment.byteSize()) {
+                throw new IllegalArgumentException(packets + " packets of " + packetLength + " bytes do not fit in a buffer of " + segment.byteSize() + " bytes");
+            }
+            transfer.endpoint(endpoint(endpoint, direction))
+                .type((byte) LibUsb.LIBUSB_TRANSFER_TYPE_ISOCHRONOUS)
+                .timeout(clampToUnsignedInt(timeout))
+                .num_iso_packets(packets);
+            // libusb_set_iso_packet_lengths is an inline function
+            for(int i = 0; i < packets; i++) {
+                transfer.iso_packet_desc(i).length(packetLength);
+            }
+        } finally {
+            release();
+        }
+    }
+    
+    @Override
+    public void isochronousTransfer(int endpoint, UsbDirection direction, int packets, long timeout) throws UsbException {
+        isochronousTransfer(endpoint, direction, packets, handle.maxIsoPacketSize(endpoint, direction), timeout);
+    }
+    
+    @Override
+    public int actualLength() {
+        claim("read the length of");
+        try {
+            return transfer.actual_length();
+        } finally {
+            release();
+        }
+    }
+    
+    @Override
+    public List<IsoPacket> isoPackets() {
+        claim("read the packets of");
+        try {
+            if(transfer.type() != LibUsb.LIBUSB_TRANSFER_TYPE_ISOCHRONOUS) {
+                return List.of();
+            }
+            
+            var count = transfer.num_iso_packets();
+            var packets = new ArrayList<IsoPacket>(count);
+            long offset = 0;
+            for(int i = 0; i < count; i++) {
+                var descriptor = transfer.iso_packet_desc(i);
+                var length = descriptor.length();
+                var buffer = segment.asSlice(offset, descriptor.actual_length()).asByteBuffer();
+                packets.add(new IsoPacket(buffer, length, transferStatus(descriptor.status())));
+                offset += length;
+            }
+            return Collections.unmodifiableList(packets);
+        } finally {
+            release();
         }
     }
     
     @Override
     public void buffer(ByteBuffer buffer) {
         Objects.requireNonNull(buffer, "buffer can't be null");
-        synchronized(this) {
-            validateMutableState();
-            var segment = MemorySegment.ofBuffer(buffer);
-            this.segment = segment;
-            transfer.buffer(segment)
-                .length(clampToUnsignedInt(segment.byteSize()));
+        buffer(MemorySegment.ofBuffer(buffer));
+    }
+    
+    @Override
+    public void buffer(MemorySegment segment, long offset, long length) {
+        Objects.requireNonNull(segment, "segment can't be null");
+        if(length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length must be between 0 and " + Integer.MAX_VALUE + ", was " + length);
         }
+        buffer(segment.asSlice(offset, length));
     }
     
-    // Only call this in a `synchronized` block
-    private void validateMutableState() {
-        if(closed) {
-            throw new IllegalStateException("Can not modify a closed transfer");
+    void buffer(MemorySegment segment) {
+        claim("modify");
+        try {
+            setup = false;
+            applyBuffer(segment);
+        } finally {
+            release();
         }
-        if(future != null) {
-            throw new IllegalStateException("Can not modify an in-flight transfer");
+    }
+    
+    // Only call this while owning the transfer
+    private void applyBuffer(MemorySegment segment) {
+        this.segment = segment;
+        var size = segment.byteSize();
+        if(segment.isNative()) {
+            releaseStaging();
+            transfer.buffer(segment);
+        } else {
+            // libusb needs native memory, heap memory is copied through a pooled buffer when submitted
+            if(staging == null || staging.byteSize() < size) {
+                releaseStaging();
+                staging = handle.staging().acquire(size);
+            }
+            transfer.buffer(staging);
+        }
+        transfer.length(clampToUnsignedInt(size));
+    }
+    
+    // Only call this while owning the transfer
+    private void releaseStaging() {
+        if(staging != null) {
+            handle.staging().release(staging);
+            staging = null;
+        }
+    }
+    
+    // Copies the heap buffer into the staging buffer before a submission, only call this while owning the transfer
+    private void stage() {
+        if(setup) {
+            if(isOut()) {
+                MemorySegment.copy(segment, 0, control, LibUsb.LIBUSB_CONTROL_SETUP_SIZE, segment.byteSize());
+            }
+            return;
+        }
+        if(staging == null) {
+            return;
+        }
+        
+        if(isOut()) {
+            MemorySegment.copy(segment, 0, staging, 0, segment.byteSize());
+        } else if(transfer.type() == LibUsb.LIBUSB_TRANSFER_TYPE_CONTROL) {
+            // Only the setup packet is read by the device
+            MemorySegment.copy(segment, 0, staging, 0, Math.min(segment.byteSize(), LibUsb.LIBUSB_CONTROL_SETUP_SIZE));
+        }
+    }
+    
+    // Copies received data back into the heap buffer after a completion, only call this while owning the transfer
+    private void unstage() {
+        if(setup) {
+            if(!isOut()) {
+                MemorySegment.copy(control, LibUsb.LIBUSB_CONTROL_SETUP_SIZE, segment, 0, Math.min(transfer.actual_length(), segment.byteSize()));
+            }
+            return;
+        }
+        if(staging == null || isOut()) {
+            return;
+        }
+        
+        long length = switch(transfer.type()) {
+            // The packets are spread over the whole buffer
+            case LibUsb.LIBUSB_TRANSFER_TYPE_ISOCHRONOUS -> transfer.length();
+            case LibUsb.LIBUSB_TRANSFER_TYPE_CONTROL -> LibUsb.LIBUSB_CONTROL_SETUP_SIZE + transfer.actual_length();
+            default -> transfer.actual_length();
+        };
+        MemorySegment.copy(staging, 0, segment, 0, Math.min(length, segment.byteSize()));
+    }
+    
+    // Only call this while owning the transfer
+    private boolean isoPacketsFit() {
+        if(transfer.type() != LibUsb.LIBUSB_TRANSFER_TYPE_ISOCHRONOUS) {
+            return true;
+        }
+        long total = 0;
+        for(int i = 0, count = transfer.num_iso_packets(); i < count; i++) {
+            total += Integer.toUnsignedLong(transfer.iso_packet_desc(i).length());
         }
+        return total <= Integer.toUnsignedLong(transfer.length());
+    }
+    
+    // Only call this while owning the transfer
+    private boolean isOut() {
+        if(transfer.type() == LibUsb.LIBUSB_TRANSFER_TYPE_CONTROL) {
+            // The direction of a control transfer is part of the setup packet
+            var packet = setup ? control : segment;
+            return packet.byteSize() == 0 || (packet.get(ValueLayout.JAVA_BYTE, 0) & LibUsb.LIBUSB_ENDPOINT_IN) == 0;
+        }
+        return (transfer.endpoint() & LibUsb.LIBUSB_ENDPOINT_IN) == 0;
+    }
+    
+    /**
+     * Sets an internal completion hook, when set {@link #submitInternal()} must be used instead of {@link #submit()}.
+     *
+     * @param completion The completion hook
+     */
+    void completion(Completion completion) {
+        claim("modify");
+        try {
+            this.completion = completion;
+        } finally {
+            release();
+        }
+    }
+    
+    // Takes exclusive ownership of an idle transfer, has to be paired with `release()`
+    private void claim(String action) {
+        while(true) {
+            switch(state) {
+                case IDLE -> {
+                    if(STATE.compareAndSet(this, IDLE, CLAIMED)) {
+                        return;
+                    }
+                }
+                // Claims are short, a concurrent claim is waited for like the lock it replaces
+                case CLAIMED -> Thread.onSpinWait();
+                case CLOSING, CLOSED -> throw new IllegalStateException("Can not " + action + " a closed transfer");
+                default -> throw new IllegalStateException("Can not " + action + " an in-flight transfer");
+            }
+        }
+    }
+    
+    private void release() {
+        state = IDLE;
     }
     
     @Override
     public CompletableFuture<Result> submit() throws UsbException {
-        synchronized(this) {
-            validateMutableState();
-            
-            int result = LibUsb.libusb_submit_transfer(transfer);
+        return submit((Runnable) null);
+    }
+    
+    /**
+     * Submits this transfer with a hook that runs on the event thread once this submission is over, after the future
+     * was handed off. Unlike a continuation of the future it also waits for a cancelled transfer to actually finish.
+     *
+     * @param idle The hook to run or null
+     * @return The future of the result
+     */
+    CompletableFuture<Result> submit(Runnable idle) throws UsbException {
+        claim("submit");
+        if(completion != null) {
+            release();
+            throw new IllegalStateException("Can not submit an internal transfer with a future");
+        }
+        
+        var future = new TransferFuture<Result>();
+        this.future = future;
+        this.idle = idle;
+        listener = null;
+        int result = submitClaimed();
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to submit transfer: " + Utils.errorName(result));
+        }
+        return future;
+    }
+    
+    @Override
+    public CompletableFuture<UsbTransferStatus> submitForStatus() throws UsbException {
+        claim("submit");
+        if(completion != null) {
+            release();
+            throw new IllegalStateException("Can not submit an internal transfer with a future");
+        }
+        
+        var future = new TransferFuture<UsbTransferStatus>();
+        statusFuture = future;
+        listener = null;
+        int result = submitClaimed();
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to submit transfer: " + Utils.errorName(result));
+        }
+        return future;
+    }
+    
+    @Override
+    public void submit(Listener listener) throws UsbException {
+        Objects.requireNonNull(listener, "listener can't be null");
+        claim("submit");
+        if(completion != null) {
+            release();
+            throw new IllegalStateException("Can not submit an internal transfer with a listener");
+        }
+        
+        this.listener = listener;
+        int result = submitClaimed();
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to submit transfer: " + Utils.errorName(result));
+        }
+    }
+    
+    // Submits a claimed transfer, the claim passes to the completion on success and is given up otherwise
+    private int submitClaimed() {
+        int result = LibUsb.LIBUSB_ERROR_OTHER;
+        try {
+            if(!isoPacketsFit()) {
+                // The buffer was replaced by a smaller one after the packets were configured
+                result = LibUsb.LIBUSB_ERROR_INVALID_PARAM;
+                return result;
+            }
+            stage();
+            if(!handle.transferSubmitted()) {
+                result = LibUsb.LIBUSB_ERROR_NO_DEVICE;
+                return result;
+            }
+            result = LibUsb.libusb_submit_transfer(transfer);
+            if(result == LibUsb.LIBUSB_SUCCESS) {
+                state = IN_FLIGHT;
+            } else {
+                handle.transferCompleted();
+            }
+            return result;
+        } finally {
             if(result != LibUsb.LIBUSB_SUCCESS) {
-                throw new UsbException("Failed to submit transfer: " + LibUsb.libusb_error_name(result));
+                future = null;
+                statusFuture = null;
+                listener = null;
+                idle = null;
+                release();
             }
+        }
+    }
+    
+    /**
+     * Submits this transfer without creating a future, the result is passed to the completion hook.
+     *
+     * @return The libusb result code
+     */
+    int submitInternal() {
+        claim("submit");
+        return submitClaimed();
+    }
     
-            future = new CompletableFuture<>();
-            return future;
+    @Override
+    public void cancel() {
+        cancel(null);
+    }
+    
+    // Cancels the current submission, when an owner is given only if it is still the submission of that future
+    private void cancel(CompletableFuture<?> owner) {
+        while(true) {
+            switch(state) {
+                case IN_FLIGHT -> {
+                    if(STATE.compareAndSet(this, IN_FLIGHT, CANCELLING)) {
+                        // The submission of the owner may be over and the transfer resubmitted by someone else
+                        if(owner == null || owner == future || owner == statusFuture) {
+                            // LIBUSB_ERROR_NOT_FOUND just means the transfer completed first
+                            LibUsb.libusb_cancel_transfer(transfer);
+                        }
+                        state = IN_FLIGHT;
+                        return;
+                    }
+                }
+                // Might be about to go in-flight
+                case CLAIMED, CANCELLING -> Thread.onSpinWait();
+                default -> {
+                    return;
+                }
+            }
         }
     }
     
     @Override
     public void close() throws UsbException {
-        synchronized(this) {
-            validateMutableState();
-            closed = true;
-            LibUsb.libusb_free_transfer(transfer);
-            session.close();
+        while(true) {
+            switch(state) {
+                case IDLE -> {
+                    if(STATE.compareAndSet(this, IDLE, CLOSED)) {
+                        free();
+                        return;
+                    }
+                }
+                case IN_FLIGHT -> {
+                    if(STATE.compareAndSet(this, IN_FLIGHT, CANCELLING)) {
+                        // libusb still owns the transfer, it gets freed once the cancellation completes
+                        LibUsb.libusb_cancel_transfer(transfer);
+                        state = CLOSING;
+                        return;
+                    }
+                }
+                case CLOSING, CLOSED -> {
+                    return;
+                }
+                default -> Thread.onSpinWait();
+            }
+        }
+    }
+    
+    // Only call this while owning the transfer
+    private void free() {
+        releaseStaging();
+        TransferIndex.unregister(id);
+        handle.unregister(this);
+        LibUsb.libusb_free_transfer(transfer);
+    }
+    
+    /**
+     * A future that cancels the native transfer when it gets cancelled, as long as the transfer is still in flight for
+     * the submission that created it.
+     */
+    private final class TransferFuture<T> extends CompletableFuture<T> {
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            var cancelled = super.cancel(mayInterruptIfRunning);
+            if(cancelled) {
+                UsbAsyncTransferImpl.this.cancel(this);
+            }
+            return cancelled;
         }
     }
+    
+    /**
+     * An internal completion hook, invoked on the event thread after the transfer was handed back so it can be
+     * resubmitted from it.
+     */
+    @FunctionalInterface
+    interface Completion {
+        void complete(int status, int length);
+    }
 }
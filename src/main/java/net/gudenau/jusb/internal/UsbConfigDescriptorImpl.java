@@ -0,0 +1,46 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.descriptor.UsbConfigDescriptor;
+import net.gudenau.jusb.descriptor.UsbInterface;
+import net.gudenau.jusb.internal.libusb.descriptor.LibUsbConfigDescriptor;
+
+import java.util.List;
+
+/**
+ * A heap copy of a configuration descriptor and everything it contains.
+ */
+public record UsbConfigDescriptorImpl(
+    byte bLength,
+    byte bDescriptorType,
+    short wTotalLength,
+    byte bNumInterfaces,
+    byte bConfigurationValue,
+    byte iConfiguration,
+    byte bmAttributes,
+    byte maxPower,
+    List<UsbInterface> interfaces
+) implements UsbConfigDescriptor {
+    /**
+     * Copies a native configuration descriptor, the native descriptor can be freed afterwards.
+     */
+    static UsbConfigDescriptorImpl of(LibUsbConfigDescriptor descriptor) {
+        return new UsbConfigDescriptorImpl(
+            descriptor.bLength(),
+            descriptor.bDescriptorType(),
+            descriptor.wTotalLength(),
+            descriptor.bNumInterfaces(),
+            descriptor.bConfigurationValue(),
+            descriptor.iConfiguration(),
+            descriptor.bmAttributes(),
+            descriptor.maxPower(),
+            descriptor.interfaces().stream()
+                .<UsbInterface>map(UsbInterfaceImpl::of)
+                .toList()
+        );
+    }
+    
+    @Override
+    public void close() {
+        // Nothing to free
+    }
+}
@@ -0,0 +1,48 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.descriptor.UsbDeviceDescriptor;
+import net.gudenau.jusb.internal.libusb.descriptor.LibUsbDeviceDescriptor;
+
+/**
+ * A heap copy of a device descriptor.
+ */
+public record UsbDeviceDescriptorImpl(
+    byte bLength,
+    byte bDescriptorType,
+    short bcdUSB,
+    byte bDeviceClass,
+    byte bDeviceSubClass,
+    byte bDeviceProtocol,
+    byte bMaxPacketSize0,
+    int idVendor,
+    int idProduct,
+    short bcdDevice,
+    byte iManufacturer,
+    byte iProduct,
+    byte iSerialNumber,
+    byte bNumConfigurations
+) implements UsbDeviceDescriptor {
+    static UsbDeviceDescriptorImpl of(LibUsbDeviceDescriptor descriptor) {
+        return new UsbDeviceDescriptorImpl(
+            descriptor.bLength(),
+            descriptor.bDescriptorType(),
+            descriptor.bcdUSB(),
+            descriptor.bDeviceClass(),
+            descriptor.bDeviceSubClass(),
+            descriptor.bDeviceProtocol(),
+            descriptor.bMaxPacketSize0(),
+            descriptor.idVendor(),
+            descriptor.idProduct(),
+            descriptor.bcdDevice(),
+            descriptor.iManufacturer(),
+            descriptor.iProduct(),
+            descriptor.iSerialNumber(),
+            descriptor.bNumConfigurations()
+        );
+    }
+    
+    @Override
+    public String toString() {
+        return "UsbDeviceDescriptor[vid=" + Integer.toHexString(idVendor) + ",pid=" + Integer.toHexString(idProduct) + "]";
+    }
+}
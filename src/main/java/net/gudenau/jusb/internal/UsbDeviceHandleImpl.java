@@ -4,6 +4,13 @@ import net.gudenau.jusb.UsbAsyncTransfer;
 import net.gudenau.jusb.UsbDeviceHandle;
 import net.gudenau.jusb.UsbDirection;
 import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.UsbStreamReader;
+import net.gudenau.jusb.UsbStreamWriter;
+import net.gudenau.jusb.UsbTimeoutException;
+import net.gudenau.jusb.UsbTransferResult;
+import net.gudenau.jusb.UsbTransferStatus;
+import net.gudenau.jusb.descriptor.UsbConfigDescriptor;
+import net.gudenau.jusb.descriptor.UsbEndpointDescriptor;
 import net.gudenau.jusb.internal.libusb.LibUsb;
 import net.gudenau.jusb.internal.libusb.LibUsbDeviceHandle;
 import net.gudenau.jusb.internal.libusb.LibUsbTransfer;
@@ -13,62 +20,224 @@ import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import static net.gudenau.jusb.internal.Utils.endpoint;
+import static net.gudenau.jusb.internal.Utils.errorStatus;
 
 public final class UsbDeviceHandleImpl implements UsbDeviceHandle {
+    private static final int ENDPOINT_COUNT = 32;
+    // bLength is a single byte, so no string descriptor is larger than this
+    private static final int STRING_DESCRIPTOR_SIZE = 255;
+    private static final ValueLayout.OfShort LE16 = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    
+    private static final SyncTransfer BULK = LibUsb::libusb_bulk_transfer;
+    private static final SyncTransfer INTERRUPT = LibUsb::libusb_interrupt_transfer;
+    
     private final JUsbImpl usb;
+    private final UsbDeviceImpl device;
     private final LibUsbDeviceHandle handle;
+    // Reusable transfers for blocking calls made from virtual threads
+    private final Queue<BlockingTransfer> blockingTransfers = new ConcurrentLinkedQueue<>();
+    // Reusable transfers for controlTransferAsync
+    private final Queue<UsbAsyncTransferImpl> controlTransfers = new ConcurrentLinkedQueue<>();
+    // Buffers from allocateBuffer, keyed by the segment that was handed out
+    private final Map<MemorySegment, Arena> buffers = new HashMap<>();
+    // Native copies of heap memory for transfers
+    private final StagingPool staging = new StagingPool();
+    // Every transfer created for this handle that was not freed yet
+    private final Set<UsbAsyncTransferImpl> transfers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean closed;
+    // Alternate settings of the claimed interfaces by interface number, guarded by itself
+    private final Map<Integer, Integer> claimedInterfaces = new HashMap<>();
+    // Endpoints of the claimed interfaces, see endpointIndex. Replaced as a whole whenever the interfaces change
+    private volatile UsbEndpointDescriptor[] endpoints = new UsbEndpointDescriptor[ENDPOINT_COUNT];
     
-    public UsbDeviceHandleImpl(JUsbImpl usb, LibUsbDeviceHandle handle) {
+    public UsbDeviceHandleImpl(JUsbImpl usb, UsbDeviceImpl device, LibUsbDeviceHandle handle) {
         this.usb = usb;
+        this.device = device;
         this.handle = handle;
         
         if(usb.enableDetach()) {
             LibUsb.libusb_set_auto_detach_kernel_driver(handle, true);
         }
+        usb.register(this);
     }
     
     @Override
     public void setConfiguration(int configuration) throws UsbException {
         var result = LibUsb.libusb_set_configuration(handle, configuration);
         if(result != LibUsb.LIBUSB_SUCCESS) {
-            throw new UsbException("Failed to set device configuration: " + LibUsb.libusb_error_name(result));
+            throw new UsbException("Failed to set device configuration: " + Utils.errorName(result));
+        }
+        device.invalidateActiveConfig();
+        synchronized(claimedInterfaces) {
+            indexEndpoints();
         }
     }
 
     @Override
     public int getConfiguration() throws UsbException {
-        try(var arena = Arena.openConfined()) {
-            var pointer = arena.allocate(ValueLayout.JAVA_INT);
-            var result = LibUsb.libusb_get_configuration(handle, pointer);
-            if(result != LibUsb.LIBUSB_SUCCESS) {
-                throw new UsbException("Failed to get device configuration: " + LibUsb.libusb_error_name(result));
-            }
-            return pointer.get(ValueLayout.JAVA_INT, 0);
+        var pointer = Scratch.get();
+        var result = LibUsb.libusb_get_configuration(handle, pointer);
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to get device configuration: " + Utils.errorName(result));
         }
+        return pointer.get(ValueLayout.JAVA_INT, 0);
     }
 
     @Override
     public void claimInterface(int iface) throws UsbException {
         var result = LibUsb.libusb_claim_interface(handle, iface);
         if(result != LibUsb.LIBUSB_SUCCESS) {
-            throw new UsbException("Failed to claim interface " + iface + ": " + LibUsb.libusb_error_name(result));
+            throw new UsbException("Failed to claim interface " + iface + ": " + Utils.errorName(result));
+        }
+        synchronized(claimedInterfaces) {
+            claimedInterfaces.put(iface, 0);
+            try {
+                indexEndpoints();
+            } catch(UsbException e) {
+                // Nothing was indexed for the interface, so it isn't kept either
+                claimedInterfaces.remove(iface);
+                LibUsb.libusb_release_interface(handle, iface);
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public void releaseInterface(int iface) throws UsbException {
+        var result = LibUsb.libusb_release_interface(handle, iface);
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to release interface " + iface + ": " + Utils.errorName(result));
+        }
+        synchronized(claimedInterfaces) {
+            claimedInterfaces.remove(iface);
+            indexEndpoints();
+        }
+    }
+    
+    @Override
+    public void setInterfaceAltSetting(int iface, int altSetting) throws UsbException {
+        var result = LibUsb.libusb_set_interface_alt_setting(handle, iface, altSetting);
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to set alternate setting " + altSetting + " of interface " + iface + ": " + Utils.errorName(result));
+        }
+        synchronized(claimedInterfaces) {
+            claimedInterfaces.put(iface, altSetting);
+            indexEndpoints();
         }
     }
     
+    @Override
+    public UsbEndpointDescriptor endpointDescriptor(int endpoint, UsbDirection direction) {
+        return endpoints[endpointIndex(endpoint(endpoint, direction))];
+    }
+    
+    // Only call this while holding the lock of claimedInterfaces
+    private void indexEndpoints() throws UsbException {
+        var endpoints = new UsbEndpointDescriptor[ENDPOINT_COUNT];
+        if(!claimedInterfaces.isEmpty()) {
+            UsbConfigDescriptor config;
+            try {
+                config = device.configDescriptor();
+            } catch(UsbException e) {
+                // A stale index would be worse than an empty one
+                this.endpoints = endpoints;
+                throw new UsbException("Failed to index the endpoints of the claimed interfaces", e);
+            }
+            for(var usbInterface : config.interfaces()) {
+                for(var setting : usbInterface.altsetting()) {
+                    var alternate = claimedInterfaces.get(setting.bInterfaceNumber() & 0xFF);
+                    if(alternate != null && alternate == (setting.bAlternateSetting() & 0xFF)) {
+                        for(var endpoint : setting.endpoints()) {
+                            endpoints[endpointIndex(endpoint.bEndpointAddress())] = endpoint;
+                        }
+                    }
+                }
+            }
+        }
+        this.endpoints = endpoints;
+    }
+    
+    // Endpoint numbers are 4 bits, the direction bit is moved next to them
+    private static int endpointIndex(byte address) {
+        return (address & 0x0F) | ((address & LibUsb.LIBUSB_ENDPOINT_IN) >>> 3);
+    }
+    
     @Override
     public int controlTransfer(int requestType, int request, int value, int index, ByteBuffer buffer, long timeout) throws UsbException, TimeoutException {
-        var result = LibUsb.libusb_control_transfer(handle, (byte) requestType, (byte) request, (short) value, (short) index, MemorySegment.ofBuffer(buffer), (short) Math.min(buffer.remaining(), 0xFFFF), (int) Math.min(Integer.MAX_VALUE, timeout));
+        var result = controlTransfer(requestType, request, value, index, MemorySegment.ofBuffer(buffer), 0, Math.min(buffer.remaining(), 0xFFFF), timeout);
+        buffer.position(buffer.position() + result);
+        return result;
+    }
+    
+    @Override
+    public int controlTransfer(int requestType, int request, int value, int index, MemorySegment segment, long offset, int length, long timeout) throws UsbException, TimeoutException {
+        if(length < 0 || length > 0xFFFF) {
+            throw new IllegalArgumentException("length must be between 0 and 65535, was " + length);
+        }
+        segment = slice(segment, offset, length);
+        if(segment.isNative()) {
+            return nativeControlTransfer(requestType, request, value, index, segment, timeout);
+        }
+        
+        // Heap memory is copied through a pooled native buffer
+        var stage = staging.acquire(length);
+        try {
+            var buffer = stage.asSlice(0, length);
+            boolean in = (requestType & LibUsb.LIBUSB_ENDPOINT_IN) != 0;
+            if(!in) {
+                MemorySegment.copy(segment, 0, buffer, 0, length);
+            }
+            var transferred = nativeControlTransfer(requestType, request, value, index, buffer, timeout);
+            if(in) {
+                MemorySegment.copy(buffer, 0, segment, 0, transferred);
+            }
+            return transferred;
+        } finally {
+            staging.release(stage);
+        }
+    }
+    
+    private int nativeControlTransfer(int requestType, int request, int value, int index, MemorySegment segment, long timeout) throws UsbException, TimeoutException {
+        var length = (short) segment.byteSize();
+        var clampedTimeout = (int) Math.min(Integer.MAX_VALUE, timeout);
+        int result;
+        if(parkTransfers(segment)) {
+            var transfer = blockingTransfer();
+            try {
+                result = transfer.controlTransfer((byte) requestType, (byte) request, (short) value, (short) index, segment, length, clampedTimeout);
+            } finally {
+                recycleBlockingTransfer(transfer);
+            }
+        } else {
+            result = LibUsb.libusb_control_transfer(handle, (byte) requestType, (byte) request, (short) value, (short) index, segment, length, clampedTimeout);
+        }
         if(result < 0) {
             if(result == LibUsb.LIBUSB_ERROR_TIMEOUT) {
                 throw new TimeoutException("Failed to perform control transfer in time");
             } else {
-                throw new UsbException("Failed to perform control transfer: " + LibUsb.libusb_error_name(result));
+                throw new UsbException("Failed to perform control transfer: " + Utils.errorName(result));
             }
         }
-        buffer.position(buffer.position() + result);
         return result;
     }
     
@@ -78,21 +247,43 @@ public final class UsbDeviceHandleImpl implements UsbDeviceHandle {
             throw new IllegalArgumentException("Buffer can't be read-only for an in transfer");
         }
         
-        try(var session = Arena.openConfined()) {
-            var segment = MemorySegment.ofBuffer(buffer);
-            var transferredPointer = session.allocate(ValueLayout.JAVA_INT);
-            var result = LibUsb.libusb_bulk_transfer(handle, endpoint(endpoint, direction), segment, buffer.remaining(), transferredPointer, (int) Math.min(Integer.MAX_VALUE, timeout));
-            if(result != 0) {
-                if(result == LibUsb.LIBUSB_ERROR_TIMEOUT) {
-                    throw new TimeoutException("Failed to perform bulk transfer in time");
-                } else {
-                    throw new UsbException("Failed to perform bulk transfer: " + LibUsb.libusb_error_name(result));
-                }
-            }
-            var transferred = transferredPointer.get(ValueLayout.JAVA_INT, 0);
-            buffer.position(buffer.position() + transferred);
-            return transferred;
+        int transferred;
+        try {
+            transferred = bulkTransfer(endpoint, direction, MemorySegment.ofBuffer(buffer), 0, buffer.remaining(), timeout);
+        } catch(UsbTimeoutException e) {
+            buffer.position(buffer.position() + e.transferred());
+            throw e;
+        }
+        buffer.position(buffer.position() + transferred);
+        return transferred;
+    }
+    
+    @Override
+    public UsbTransferResult tryBulkTransfer(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException {
+        if(direction == UsbDirection.IN && buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Buffer can't be read-only for an in transfer");
         }
+        
+        var result = tryBulkTransfer(endpoint, direction, MemorySegment.ofBuffer(buffer), 0, buffer.remaining(), timeout);
+        buffer.position(buffer.position() + result.transferred());
+        return result;
+    }
+    
+    @Override
+    public UsbTransferStatus bulkTransferStatus(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException {
+        return statusTransfer(LibUsb.LIBUSB_TRANSFER_TYPE_BULK, endpoint, direction, buffer, timeout, "bulk");
+    }
+    
+    @Override
+    public UsbTransferResult tryBulkTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException {
+        Objects.requireNonNull(direction, "direction can't be null");
+        return tryTransfer(LibUsb.LIBUSB_TRANSFER_TYPE_BULK, endpoint(endpoint, direction), slice(segment, offset, length), timeout, "bulk");
+    }
+    
+    @Override
+    public int bulkTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException, TimeoutException {
+        Objects.requireNonNull(direction, "direction can't be null");
+        return transfer(LibUsb.LIBUSB_TRANSFER_TYPE_BULK, endpoint(endpoint, direction), slice(segment, offset, length), timeout, "bulk");
     }
     
     @Override
@@ -100,71 +291,673 @@ public final class UsbDeviceHandleImpl implements UsbDeviceHandle {
         if(direction == UsbDirection.IN && buffer.isReadOnly()) {
             throw new IllegalArgumentException("Buffer can't be read-only for an in transfer");
         }
+        
+        int transferred;
+        try {
+            transferred = interruptTransfer(endpoint, direction, MemorySegment.ofBuffer(buffer), 0, buffer.remaining(), timeout);
+        } catch(UsbTimeoutException e) {
+            buffer.position(buffer.position() + e.transferred());
+            throw e;
+        }
+        buffer.position(buffer.position() + transferred);
+        return transferred;
+    }
     
-        try(var session = Arena.openConfined()) {
-            var segment = MemorySegment.ofBuffer(buffer);
-            var transferredPointer = session.allocate(ValueLayout.JAVA_INT);
-            var result = LibUsb.libusb_interrupt_transfer(handle, endpoint(endpoint, direction), segment, buffer.remaining(), transferredPointer, (int) Math.min(Integer.MAX_VALUE, timeout));
-            if(result != 0) {
-                if(result == LibUsb.LIBUSB_ERROR_TIMEOUT) {
-                    throw new TimeoutException("Failed to perform interrupt transfer in time");
-                } else {
-                    throw new UsbException("Failed to perform interrupt transfer: " + LibUsb.libusb_error_name(result));
-                }
+    @Override
+    public UsbTransferResult tryInterruptTransfer(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException {
+        if(direction == UsbDirection.IN && buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Buffer can't be read-only for an in transfer");
+        }
+        
+        var result = tryInterruptTransfer(endpoint, direction, MemorySegment.ofBuffer(buffer), 0, buffer.remaining(), timeout);
+        buffer.position(buffer.position() + result.transferred());
+        return result;
+    }
+    
+    @Override
+    public UsbTransferStatus interruptTransferStatus(int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout) throws UsbException {
+        return statusTransfer(LibUsb.LIBUSB_TRANSFER_TYPE_INTERRUPT, endpoint, direction, buffer, timeout, "interrupt");
+    }
+    
+    @Override
+    public UsbTransferResult tryInterruptTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException {
+        Objects.requireNonNull(direction, "direction can't be null");
+        return tryTransfer(LibUsb.LIBUSB_TRANSFER_TYPE_INTERRUPT, endpoint(endpoint, direction), slice(segment, offset, length), timeout, "interrupt");
+    }
+    
+    @Override
+    public int interruptTransfer(int endpoint, UsbDirection direction, MemorySegment segment, long offset, int length, long timeout) throws UsbException, TimeoutException {
+        Objects.requireNonNull(direction, "direction can't be null");
+        return transfer(LibUsb.LIBUSB_TRANSFER_TYPE_INTERRUPT, endpoint(endpoint, direction), slice(segment, offset, length), timeout, "interrupt");
+    }
+    
+    private static MemorySegment slice(MemorySegment segment, long offset, int length) {
+        Objects.requireNonNull(segment, "segment can't be null");
+        if(length < 0) {
+            throw new IllegalArgumentException("length can't be negative");
+        }
+        return segment.asSlice(offset, length);
+    }
+    
+    private int transfer(int type, byte endpoint, MemorySegment segment, long timeout, String name) throws UsbException, TimeoutException {
+        var packed = rawTransfer(type, endpoint, segment, timeout);
+        var result = (int) (packed >> 32);
+        var transferred = (int) packed;
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            if(result == LibUsb.LIBUSB_ERROR_TIMEOUT) {
+                throw new UsbTimeoutException("Failed to perform " + name + " transfer in time", transferred);
+            } else {
+                throw new UsbException("Failed to perform " + name + " transfer: " + Utils.errorName(result));
             }
-            var transferred = transferredPointer.get(ValueLayout.JAVA_INT, 0);
-            buffer.position(buffer.position() + transferred);
-            return transferred;
         }
+        return transferred;
+    }
+    
+    private UsbTransferResult tryTransfer(int type, byte endpoint, MemorySegment segment, long timeout, String name) throws UsbException {
+        var packed = rawTransfer(type, endpoint, segment, timeout);
+        return new UsbTransferResult(status(packed, name), (int) packed);
+    }
+    
+    private UsbTransferStatus statusTransfer(int type, int endpoint, UsbDirection direction, ByteBuffer buffer, long timeout, String name) throws UsbException {
+        Objects.requireNonNull(direction, "direction can't be null");
+        if(direction == UsbDirection.IN && buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Buffer can't be read-only for an in transfer");
+        }
+        
+        var packed = rawTransfer(type, endpoint(endpoint, direction), MemorySegment.ofBuffer(buffer), timeout);
+        buffer.position(buffer.position() + (int) packed);
+        return status(packed, name);
+    }
+    
+    // Expected outcomes are returned as a status, only unexpected libusb errors get thrown
+    private static UsbTransferStatus status(long packed, String name) throws UsbException {
+        var result = (int) (packed >> 32);
+        var status = errorStatus(result);
+        if(status == null) {
+            throw new UsbException("Failed to perform " + name + " transfer: " + Utils.errorName(result));
+        }
+        return status;
+    }
+    
+    // Returns the libusb result in the upper and the transferred amount in the lower half, so nothing is allocated
+    private long rawTransfer(int type, byte endpoint, MemorySegment segment, long timeout) throws UsbException {
+        if(segment.isNative()) {
+            return nativeTransfer(type, endpoint, segment, timeout);
+        }
+        
+        // Heap memory is copied through a pooled native buffer
+        var size = segment.byteSize();
+        var stage = staging.acquire(size);
+        try {
+            var buffer = stage.asSlice(0, size);
+            boolean in = (endpoint & LibUsb.LIBUSB_ENDPOINT_IN) != 0;
+            if(!in) {
+                MemorySegment.copy(segment, 0, buffer, 0, size);
+            }
+            var packed = nativeTransfer(type, endpoint, buffer, timeout);
+            if(in) {
+                // Data that arrived before a failure is kept as well
+                MemorySegment.copy(buffer, 0, segment, 0, (int) packed);
+            }
+            return packed;
+        } finally {
+            staging.release(stage);
+        }
+    }
+    
+    private long nativeTransfer(int type, byte endpoint, MemorySegment segment, long timeout) throws UsbException {
+        var clampedTimeout = (int) Math.min(Integer.MAX_VALUE, timeout);
+        if(!parkTransfers(segment)) {
+            return syncTransfer(type == LibUsb.LIBUSB_TRANSFER_TYPE_BULK ? BULK : INTERRUPT, handle, endpoint, segment, clampedTimeout);
+        }
+        
+        var transfer = blockingTransfer();
+        try {
+            var result = transfer.transfer(type, endpoint, segment, clampedTimeout);
+            return ((long) result << 32) | Integer.toUnsignedLong(transfer.transferred());
+        } finally {
+            recycleBlockingTransfer(transfer);
+        }
+    }
+    
+    /**
+     * Performs a transfer with one of the blocking libusb transfer functions on the calling thread, the transferred
+     * length is read back from the scratch memory of the thread.
+     *
+     * @return The libusb result in the upper and the transferred length in the lower 32 bits
+     */
+    static long syncTransfer(SyncTransfer function, LibUsbDeviceHandle handle, byte endpoint, MemorySegment segment, int timeout) {
+        var transferred = Scratch.get();
+        var result = function.transfer(handle, endpoint, segment, (int) segment.byteSize(), transferred, timeout);
+        return ((long) result << 32) | Integer.toUnsignedLong(transferred.get(ValueLayout.JAVA_INT, 0));
+    }
+    
+    /**
+     * Checks if a blocking transfer should park the calling thread instead of blocking in libusb. A virtual thread that
+     * blocks in a native call pins its carrier thread, so when the event thread is running the transfer is submitted
+     * asynchronously and the virtual thread is parked until it completes.
+     */
+    private boolean parkTransfers(MemorySegment segment) {
+        // Heap memory can't be handed to an asynchronous transfer
+        return segment.isNative() && usb.enableAsync() && Thread.currentThread().isVirtual() && !closed;
+    }
+    
+    private void recycleBlockingTransfer(BlockingTransfer transfer) {
+        if(closed) {
+            try {
+                transfer.close();
+            } catch(Throwable ignored) {}
+        } else {
+            blockingTransfers.offer(transfer);
+        }
+    }
+    
+    private BlockingTransfer blockingTransfer() throws UsbException {
+        var transfer = blockingTransfers.poll();
+        return transfer == null ? new BlockingTransfer(this) : transfer;
     }
     
     @Override
-    public UsbAsyncTransfer createTransfer() throws UsbException {
+    public MemorySegment allocateBuffer(long size) throws UsbException {
+        if(size <= 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("size must be between 1 and " + Integer.MAX_VALUE + ", was " + size);
+        }
+        
+        // Every buffer gets its own arena so it can be freed on its own
+        var arena = Arena.openShared();
+        MemorySegment segment;
+        try {
+            var memory = LibUsb.libusb_dev_mem_alloc(handle, size);
+            if(memory.equals(MemorySegment.NULL)) {
+                // Not supported by the platform or the kernel ran out of usbfs memory
+                segment = arena.allocate(size, 8);
+            } else {
+                segment = MemorySegment.ofAddress(memory.address(), size, arena.scope(), () ->
+                    LibUsb.libusb_dev_mem_free(handle, MemorySegment.ofAddress(memory.address(), size))
+                );
+            }
+        } catch(Throwable t) {
+            arena.close();
+            throw t;
+        }
+        
+        synchronized(buffers) {
+            if(closed) {
+                arena.close();
+                throw new IllegalStateException("Can not allocate a buffer on a closed handle");
+            }
+            buffers.put(segment, arena);
+        }
+        return segment;
+    }
+    
+    @Override
+    public void freeBuffer(MemorySegment segment) {
+        Objects.requireNonNull(segment, "segment can't be null");
+        Arena arena;
+        // Segments compare by address and size, so slices of a buffer don't match it
+        synchronized(buffers) {
+            arena = buffers.remove(segment);
+        }
+        if(arena == null) {
+            throw new IllegalArgumentException("Buffer was not allocated by this handle");
+        }
+        arena.close();
+    }
+    
+    @Override
+    public int allocStreams(int streams, int... endpoints) throws UsbException {
+        if(streams <= 0) {
+            throw new IllegalArgumentException("streams must be positive");
+        }
+        
+        try(var arena = Arena.openConfined()) {
+            var result = LibUsb.libusb_alloc_streams(handle, streams, endpointArray(arena, endpoints));
+            if(result < 0) {
+                throw new UsbException("Failed to allocate bulk streams: " + Utils.errorName(result));
+            }
+            return result;
+        }
+    }
+    
+    @Override
+    public void freeStreams(int... endpoints) throws UsbException {
+        try(var arena = Arena.openConfined()) {
+            var result = LibUsb.libusb_free_streams(handle, endpointArray(arena, endpoints));
+            if(result != LibUsb.LIBUSB_SUCCESS) {
+                throw new UsbException("Failed to free bulk streams: " + Utils.errorName(result));
+            }
+        }
+    }
+    
+    // Streams span several endpoints, so the raw addresses are checked against the claimed endpoints instead
+    private MemorySegment endpointArray(Arena arena, int[] endpoints) {
+        Objects.requireNonNull(endpoints, "endpoints can't be null");
+        if(endpoints.length == 0) {
+            throw new IllegalArgumentException("endpoints can't be empty");
+        }
+        
+        var index = this.endpoints;
+        var segment = arena.allocate(endpoints.length);
+        for(int i = 0; i < endpoints.length; i++) {
+            var address = endpoints[i];
+            if((address & ~0x8F) != 0) {
+                throw new IllegalArgumentException("Invalid endpoint address 0x" + Integer.toHexString(address));
+            }
+            var descriptor = index[endpointIndex((byte) address)];
+            if(descriptor == null || (descriptor.bmAttributes() & 0x03) != LibUsb.LIBUSB_TRANSFER_TYPE_BULK) {
+                throw new IllegalArgumentException("Endpoint 0x" + Integer.toHexString(address) + " is not a bulk endpoint of a claimed interface");
+            }
+            segment.set(ValueLayout.JAVA_BYTE, i, (byte) address);
+        }
+        return segment;
+    }
+    
+    @Override
+    public UsbAsyncTransferImpl createTransfer() throws UsbException {
+        return createTransfer(0);
+    }
+    
+    @Override
+    public UsbTransferGroupImpl transferGroup() throws UsbException {
+        if(!usb.enableAsync()) {
+            throw new UsbException("Async transfers are not enabled");
+        }
+        return new UsbTransferGroupImpl(this);
+    }
+    
+    @Override
+    public UsbAsyncTransferImpl createTransfer(int isoPackets) throws UsbException {
         if(!usb.enableAsync()) {
             throw new UsbException("Async transfers are not enabled");
         }
+        if(isoPackets < 0) {
+            throw new IllegalArgumentException("isoPackets can't be negative");
+        }
         
-        var address = LibUsb.libusb_alloc_transfer(0);
+        var address = LibUsb.libusb_alloc_transfer(isoPackets);
         if(address.equals(MemorySegment.NULL)) {
             throw new UsbException("Failed to allocate libusb transfer structure");
         }
-        return new UsbAsyncTransferImpl(this, new LibUsbTransfer(address));
+        return new UsbAsyncTransferImpl(this, new LibUsbTransfer(address), isoPackets);
+    }
+    
+    @Override
+    public CompletableFuture<UsbAsyncTransfer.Result> controlTransferAsync(int requestType, int request, int value, int index, ByteBuffer buffer, long timeout) throws UsbException {
+        Objects.requireNonNull(buffer, "buffer can't be null");
+        
+        var transfer = controlTransfers.poll();
+        if(transfer == null) {
+            transfer = createTransfer();
+        }
+        
+        try {
+            transfer.controlTransfer(requestType, request, value, index, buffer, timeout);
+            var pooled = transfer;
+            // Recycled once the transfer is actually done, a cancelled future completes before that
+            return transfer.submit(() -> recycleControlTransfer(pooled));
+        } catch(Throwable t) {
+            recycleControlTransfer(transfer);
+            throw t;
+        }
+    }
+    
+    private void recycleControlTransfer(UsbAsyncTransferImpl transfer) {
+        if(closed) {
+            try {
+                transfer.close();
+            } catch(Throwable ignored) {}
+        } else {
+            controlTransfers.offer(transfer);
+        }
+    }
+    
+    @Override
+    public int maxIsoPacketSize(int endpoint, UsbDirection direction) throws UsbException {
+        var result = LibUsb.libusb_get_max_iso_packet_size(LibUsb.libusb_get_device(handle), endpoint(endpoint, direction));
+        if(result < 0) {
+            throw new UsbException("Failed to get max iso packet size of endpoint " + endpoint + ": " + Utils.errorName(result));
+        }
+        return result;
+    }
+
+    @Override
+    public UsbStreamReader streamReader(int endpoint, int transfers, int transferSize, Consumer<ByteBuffer> consumer) throws UsbException {
+        Objects.requireNonNull(consumer, "consumer can't be null");
+        if(transfers <= 0) {
+            throw new IllegalArgumentException("transfers must be positive");
+        }
+        if(transferSize <= 0) {
+            throw new IllegalArgumentException("transferSize must be positive");
+        }
+        
+        return new UsbStreamReaderImpl(this, endpoint, transfers, transferSize, consumer);
+    }
+
+    @Override
+    public UsbStreamWriter streamWriter(int endpoint, int transfers, int transferSize, long timeout) throws UsbException {
+        if(transfers <= 0) {
+            throw new IllegalArgumentException("transfers must be positive");
+        }
+        if(transferSize <= 0) {
+            throw new IllegalArgumentException("transferSize must be positive");
+        }
+        
+        return new UsbStreamWriterImpl(this, endpoint, transfers, transferSize, timeout);
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> bulkPublisher(int endpoint, int transfers, int transferSize) throws UsbException {
+        return publisher(endpoint, false, transfers, transferSize);
+    }
+    
+    @Override
+    public Flow.Publisher<ByteBuffer> interruptPublisher(int endpoint, int transfers, int transferSize) throws UsbException {
+        return publisher(endpoint, true, transfers, transferSize);
+    }
+    
+    private Flow.Publisher<ByteBuffer> publisher(int endpoint, boolean interrupt, int transfers, int transferSize) throws UsbException {
+        if(!usb.enableAsync()) {
+            throw new UsbException("Async transfers are not enabled");
+        }
+        if(transfers <= 0) {
+            throw new IllegalArgumentException("transfers must be positive");
+        }
+        if(transferSize <= 0) {
+            throw new IllegalArgumentException("transferSize must be positive");
+        }
+        
+        return new UsbEndpointPublisher(this, endpoint, interrupt, transfers, transferSize);
     }
 
     @Override
     public String stringDescriptor(byte index) throws UsbException {
-        try(var arena = Arena.openConfined()) {
-            var buffer = arena.allocate(255, 8);
-            var result = LibUsb.libusb_get_string_descriptor(handle, (byte) 0, (short) 0, buffer);
-            if(result < 0) {
-                throw new UsbException("Failed to get supported languages from USB device: " + LibUsb.libusb_error_name(result));
+        var cached = device.cachedString(index);
+        if(cached != null) {
+            return cached;
+        }
+        
+        var languageId = languageId();
+        var buffer = Scratch.get().asSlice(0, STRING_DESCRIPTOR_SIZE);
+        var result = LibUsb.libusb_get_string_descriptor(handle, index, languageId, buffer);
+        if(result < 0) {
+            throw new UsbException("Failed to get string descriptor from USB device: " + Utils.errorName(result));
+        }
+        
+        var string = decodeString(buffer, result);
+        device.cacheString(index, string);
+        return string;
+    }
+    
+    // The language of the device is read once and kept by the device
+    private short languageId() throws UsbException {
+        var cached = device.languageId();
+        if(cached != -1) {
+            return (short) cached;
+        }
+        
+        var buffer = Scratch.get().asSlice(0, STRING_DESCRIPTOR_SIZE);
+        var result = LibUsb.libusb_get_string_descriptor(handle, (byte) 0, (short) 0, buffer);
+        if(result < 0) {
+            throw new UsbException("Failed to get supported languages from USB device: " + Utils.errorName(result));
+        }
+        
+        var languageId = parseLanguageId(buffer, result);
+        device.languageId(languageId);
+        return (short) languageId;
+    }
+    
+    private static int parseLanguageId(MemorySegment table, long length) throws UsbException {
+        if(length < 4) {
+            throw new UsbException("Failed to get supported languages from USB device: Not enough data was transferred");
+        }
+        return Short.toUnsignedInt(table.get(LE16, 2));
+    }
+    
+    // The string is UTF-16LE after the two byte header
+    private static String decodeString(MemorySegment descriptor, long length) throws UsbException {
+        if(length < 2) {
+            throw new UsbException("Failed to get string descriptor from USB device: Not enough data was transferred");
+        }
+        var bytes = descriptor.asSlice(2, (length - 2) & ~1).toArray(ValueLayout.JAVA_BYTE);
+        return new String(bytes, StandardCharsets.UTF_16LE);
+    }
+    
+    @Override
+    public CompletableFuture<Void> prefetchStringDescriptors(long timeout) throws UsbException {
+        var indices = stringIndices();
+        // A slot for every string and one for the language table, all in one pooled native buffer
+        var buffer = staging.acquire((long) (indices.length + 1) * STRING_DESCRIPTOR_SIZE);
+        var cached = device.languageId();
+        if(cached != -1) {
+            return prefetchStrings(buffer, indices, (short) cached, timeout);
+        }
+        
+        CompletableFuture<MemorySegment> language;
+        try {
+            language = stringDescriptorAsync(slot(buffer, indices.length), (byte) 0, (short) 0, timeout);
+        } catch(Throwable t) {
+            staging.release(buffer);
+            throw t;
+        }
+        language.whenComplete((table, error) -> {
+            if(error != null) {
+                staging.release(buffer);
             }
-            if(result < 4) {
-                throw new UsbException("Failed to get supported languages from USB device: Not enough data was transferred");
+        });
+        return language.thenCompose((table) -> {
+            int languageId;
+            try {
+                if(table == null) {
+                    throw new UsbException("Failed to get supported languages from USB device: The request stalled");
+                }
+                languageId = parseLanguageId(table, table.byteSize());
+            } catch(UsbException e) {
+                staging.release(buffer);
+                throw new CompletionException(e);
             }
-
-            var languageId = buffer.get(ValueLayout.JAVA_SHORT, 2);
-            result = LibUsb.libusb_get_string_descriptor(handle, index, languageId, buffer);
-            if(result < 0) {
-                throw new UsbException("Failed to get supported languages from USB device: " + LibUsb.libusb_error_name(result));
+            device.languageId(languageId);
+            
+            try {
+                return prefetchStrings(buffer, indices, (short) languageId, timeout);
+            } catch(UsbException e) {
+                throw new CompletionException(e);
             }
-            if(result < 2) {
-                throw new UsbException("Failed to get supported languages from USB device: Not enough data was transferred");
+        });
+    }
+    
+    // Takes over the buffer, it goes back to the staging pool once every request is over
+    private CompletableFuture<Void> prefetchStrings(MemorySegment buffer, byte[] indices, short languageId, long timeout) throws UsbException {
+        // Every request is submitted right away so they are queued on the device back to back
+        var requests = new ArrayList<CompletableFuture<Void>>(indices.length);
+        CompletableFuture<Void> all;
+        try {
+            for(int i = 0; i < indices.length; i++) {
+                var index = indices[i];
+                if(device.cachedString(index) != null) {
+                    continue;
+                }
+                requests.add(stringDescriptorAsync(slot(buffer, i), index, languageId, timeout).thenAccept((descriptor) -> {
+                    // A stall means the device doesn't have the string, both it and malformed strings are skipped
+                    if(descriptor != null) {
+                        try {
+                            device.cacheString(index, decodeString(descriptor, descriptor.byteSize()));
+                        } catch(UsbException ignored) {}
+                    }
+                }));
             }
-
-            int size = (result - 2) / 2;
-            char[] string = new char[size];
-            buffer.asByteBuffer().order(ByteOrder.nativeOrder()).asCharBuffer().get(1, string);
-            return new String(string);
+        } finally {
+            // When a submission failed the requests before it still write into the buffer until they are over
+            all = CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new));
+            all.whenComplete((ignored, error) -> staging.release(buffer));
         }
+        // A copy, so cancelling the returned future can't release the buffer early
+        return all.copy();
+    }
+    
+    private static MemorySegment slot(MemorySegment buffer, int slot) {
+        return buffer.asSlice((long) slot * STRING_DESCRIPTOR_SIZE, STRING_DESCRIPTOR_SIZE);
+    }
+    
+    // Completes with a view of the slot or null if the request stalled
+    private CompletableFuture<MemorySegment> stringDescriptorAsync(MemorySegment slot, byte index, short languageId, long timeout) throws UsbException {
+        return controlTransferAsync(
+            LibUsb.LIBUSB_ENDPOINT_IN,
+            LibUsb.LIBUSB_REQUEST_GET_DESCRIPTOR,
+            (LibUsb.LIBUSB_DT_STRING << 8) | (index & 0xFF),
+            languageId & 0xFFFF,
+            slot.asByteBuffer(),
+            timeout
+        ).thenApply((result) -> result.stall() ? null : MemorySegment.ofBuffer(result.buffer()));
+    }
+    
+    // The string indices of the device descriptor and the active configuration
+    private byte[] stringIndices() {
+        var descriptor = device.descriptor();
+        var wanted = new boolean[256];
+        wanted[descriptor.iManufacturer() & 0xFF] = true;
+        wanted[descriptor.iProduct() & 0xFF] = true;
+        wanted[descriptor.iSerialNumber() & 0xFF] = true;
+        try {
+            var config = device.configDescriptor();
+            wanted[config.iConfiguration() & 0xFF] = true;
+            for(var usbInterface : config.interfaces()) {
+                for(var setting : usbInterface.altsetting()) {
+                    wanted[setting.iInterface() & 0xFF] = true;
+                }
+            }
+        } catch(UsbException ignored) {
+            // Only the device strings are fetched then
+        }
+        
+        // Index 0 means there is no string
+        int count = 0;
+        for(int i = 1; i < wanted.length; i++) {
+            if(wanted[i]) {
+                count++;
+            }
+        }
+        var indices = new byte[count];
+        for(int i = 1, j = 0; i < wanted.length; i++) {
+            if(wanted[i]) {
+                indices[j++] = (byte) i;
+            }
+        }
+        return indices;
     }
 
     @Override
     public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        usb.unregister(this);
+        
+        // Nothing can be submitted anymore, so every in-flight transfer finishes promptly once cancelled
+        for(var transfer : transfers) {
+            transfer.cancel();
+        }
+        // The last transfer to finish releases the handle, the event thread can't wait for that
+        boolean interrupted = false;
+        while(inFlight.get() > 0 && !usb.isEventThread()) {
+            usb.driveEvents();
+            synchronized(this) {
+                if(inFlight.get() > 0) {
+                    try {
+                        wait(10);
+                    } catch(InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if(inFlight.get() == 0) {
+            release();
+        }
+    }
+    
+    // Frees everything owned by this handle, runs once after it was closed and all transfers finished
+    private void release() {
+        if(released.getAndSet(true)) {
+            return;
+        }
+        
+        BlockingTransfer transfer;
+        while((transfer = blockingTransfers.poll()) != null) {
+            try {
+                transfer.close();
+            } catch(Throwable ignored) {}
+        }
+        UsbAsyncTransferImpl controlTransfer;
+        while((controlTransfer = controlTransfers.poll()) != null) {
+            try {
+                controlTransfer.close();
+            } catch(Throwable ignored) {}
+        }
+        synchronized(buffers) {
+            for(var arena : buffers.values()) {
+                arena.close();
+            }
+            buffers.clear();
+        }
         LibUsb.libusb_close(handle);
     }
     
+    void register(UsbAsyncTransferImpl transfer) {
+        transfers.add(transfer);
+    }
+    
+    void unregister(UsbAsyncTransferImpl transfer) {
+        transfers.remove(transfer);
+    }
+    
+    /**
+     * Counts a submission of a transfer of this handle.
+     *
+     * @return False if the handle was closed and the transfer must not be submitted
+     */
+    boolean transferSubmitted() {
+        inFlight.incrementAndGet();
+        if(closed) {
+            transferCompleted();
+            return false;
+        }
+        return true;
+    }
+    
+    // Invoked after a submission is over, including its completion hooks
+    void transferCompleted() {
+        if(inFlight.decrementAndGet() == 0 && closed) {
+            release();
+            synchronized(this) {
+                notifyAll();
+            }
+        }
+    }
+    
     LibUsbDeviceHandle handle() {
         return handle;
     }
+    
+    StagingPool staging() {
+        return staging;
+    }
+    
+    JUsbImpl usb() {
+        return usb;
+    }
+    
+    /**
+     * A blocking libusb transfer function, {@code libusb_bulk_transfer} or {@code libusb_interrupt_transfer}.
+     */
+    @FunctionalInterface
+    interface SyncTransfer {
+        int transfer(LibUsbDeviceHandle handle, byte endpoint, MemorySegment data, int length, MemorySegment transferred, int timeout);
+    }
 }
@@ -1,5 +1,6 @@
 package net.gudenau.jusb.internal;
 
+import net.gudenau.jusb.JUsb;
 import net.gudenau.jusb.UsbDevice;
 import net.gudenau.jusb.UsbDeviceHandle;
 import net.gudenau.jusb.UsbException;
@@ -12,6 +13,7 @@ import net.gudenau.jusb.internal.libusb.descriptor.LibUsbDeviceDescriptor;
 import net.gudenau.jusb.internal.libusb.LibUsbDeviceHandle;
 
 import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
 
 import static net.gudenau.jusb.internal.ForeignUtils.UNBOUND_ADDRESS;
@@ -19,16 +21,42 @@ import static net.gudenau.jusb.internal.ForeignUtils.UNBOUND_ADDRESS;
 public final class UsbDeviceImpl implements UsbDevice {
     private final JUsbImpl usb;
     private final LibUsbDevice device;
-    private final Arena session;
-    private final LibUsbDeviceDescriptor descriptor;
+    private final UsbDeviceDescriptorImpl descriptor;
+    // The last device list this device was part of, guarded by the DeviceRegistry
+    int generation;
+    // The registry dropped its reference to the libusb device, guarded by `this`
+    private boolean retired;
+    // References taken for the callers of JUsb#devices() that were not closed yet, guarded by `this`
+    private int references;
+    // Parsed configuration descriptors by index, they never change while the device is connected, guarded by `this`
+    private final UsbConfigDescriptor[] configs;
+    // The descriptor of the active configuration, cleared when a handle changes the configuration, guarded by `this`
+    private UsbConfigDescriptor activeConfig;
+    // Decoded string descriptors by index and the language they are read in, -1 until it is known, guarded by `this`
+    private final String[] strings = new String[256];
+    private int languageId = -1;
     
-    public UsbDeviceImpl(JUsbImpl usb, LibUsbDevice device) {
+    /**
+     * Creates a device for the {@link DeviceRegistry}, the device takes over the passed reference.
+     */
+    UsbDeviceImpl(JUsbImpl usb, LibUsbDevice device) {
         this.usb = usb;
         this.device = device;
-        session = Arena.openShared();
-        descriptor = new LibUsbDeviceDescriptor(session);
-        // Doesn't fail anymore
-        LibUsb.libusb_get_device_descriptor(device, descriptor);
+        try(var arena = Arena.openConfined()) {
+            var descriptor = new LibUsbDeviceDescriptor(arena);
+            // Doesn't fail anymore
+            LibUsb.libusb_get_device_descriptor(device, descriptor);
+            this.descriptor = UsbDeviceDescriptorImpl.of(descriptor);
+        }
+        configs = new UsbConfigDescriptor[this.descriptor.bNumConfigurations() & 0xFF];
+    }
+    
+    // Only call this in a `synchronized` block
+    private LibUsbDevice device() throws UsbException {
+        if(retired) {
+            throw new UsbException("Device was disconnected");
+        }
+        return device;
     }
     
     @Override
@@ -38,71 +66,185 @@ public final class UsbDeviceImpl implements UsbDevice {
 
     @Override
     public UsbConfigDescriptor configDescriptor() throws UsbException {
-        try(var arena = Arena.openConfined()) {
-            var pointer = arena.allocate(UNBOUND_ADDRESS);
-            var result = LibUsb.libusb_get_active_config_descriptor(device, pointer);
-            if(result != LibUsb.LIBUSB_SUCCESS) {
-                throw new UsbException("Failed to get active configuration descriptor: " + LibUsb.libusb_error_name(result));
+        synchronized(this) {
+            if(activeConfig != null) {
+                return activeConfig;
+            }
+            try(var arena = Arena.openConfined()) {
+                var pointer = arena.allocate(UNBOUND_ADDRESS);
+                var result = LibUsb.libusb_get_active_config_descriptor(device(), pointer);
+                if(result != LibUsb.LIBUSB_SUCCESS) {
+                    throw new UsbException("Failed to get active configuration descriptor: " + Utils.errorName(result));
+                }
+                activeConfig = copyConfigDescriptor(pointer);
+                return activeConfig;
             }
-            return new LibUsbConfigDescriptor(pointer.get(UNBOUND_ADDRESS, 0).asSlice(0, LibUsbConfigDescriptor.LAYOUT.byteSize()));
         }
     }
 
     @Override
     public UsbConfigDescriptor configDescriptor(int index) throws UsbException {
-        try(var arena = Arena.openConfined()) {
-            var pointer = arena.allocate(UNBOUND_ADDRESS);
-            var result = LibUsb.libusb_get_config_descriptor(device, (byte) index, pointer);
-            if(result != LibUsb.LIBUSB_SUCCESS) {
-                throw new UsbException("Failed to get configuration descriptor: " + LibUsb.libusb_error_name(result));
+        synchronized(this) {
+            var cached = index >= 0 && index < configs.length;
+            if(cached && configs[index] != null) {
+                return configs[index];
+            }
+            try(var arena = Arena.openConfined()) {
+                var pointer = arena.allocate(UNBOUND_ADDRESS);
+                var result = LibUsb.libusb_get_config_descriptor(device(), (byte) index, pointer);
+                if(result != LibUsb.LIBUSB_SUCCESS) {
+                    throw new UsbException("Failed to get configuration descriptor: " + Utils.errorName(result));
+                }
+                var config = copyConfigDescriptor(pointer);
+                if(cached) {
+                    configs[index] = config;
+                }
+                return config;
             }
-            return new LibUsbConfigDescriptor(pointer.get(UNBOUND_ADDRESS, 0).asSlice(0, LibUsbConfigDescriptor.LAYOUT.byteSize()));
         }
     }
 
     @Override
     public UsbConfigDescriptor configDescriptorByValue(int value) throws UsbException {
-        try(var arena = Arena.openConfined()) {
-            var pointer = arena.allocate(UNBOUND_ADDRESS);
-            var result = LibUsb.libusb_get_config_descriptor_by_value(device, (byte) value, pointer);
-            if(result != LibUsb.LIBUSB_SUCCESS) {
-                throw new UsbException("Failed to get configuration descriptor by value: " + LibUsb.libusb_error_name(result));
+        synchronized(this) {
+            // libusb searches the configurations the same way, but would parse each one again
+            for(int i = 0; i < configs.length; i++) {
+                var config = configDescriptor(i);
+                if((config.bConfigurationValue() & 0xFF) == (value & 0xFF)) {
+                    return config;
+                }
             }
-            return new LibUsbConfigDescriptor(pointer.get(UNBOUND_ADDRESS, 0).asSlice(0, LibUsbConfigDescriptor.LAYOUT.byteSize()));
+            throw new UsbException("Failed to get configuration descriptor by value: " + Utils.errorName(LibUsb.LIBUSB_ERROR_NOT_FOUND));
+        }
+    }
+    
+    String cachedString(byte index) {
+        synchronized(this) {
+            return strings[index & 0xFF];
+        }
+    }
+    
+    void cacheString(byte index, String string) {
+        synchronized(this) {
+            strings[index & 0xFF] = string;
+        }
+    }
+    
+    int languageId() {
+        synchronized(this) {
+            return languageId;
+        }
+    }
+    
+    void languageId(int languageId) {
+        synchronized(this) {
+            this.languageId = languageId;
+        }
+    }
+    
+    /**
+     * Drops the cached active configuration, called after a handle changed the configuration.
+     */
+    void invalidateActiveConfig() {
+        synchronized(this) {
+            activeConfig = null;
+        }
+    }
+
+    // Copies a configuration descriptor returned by libusb to the heap and frees it
+    private static UsbConfigDescriptor copyConfigDescriptor(MemorySegment pointer) {
+        var descriptor = new LibUsbConfigDescriptor(pointer.get(UNBOUND_ADDRESS, 0).asSlice(0, LibUsbConfigDescriptor.LAYOUT.byteSize()));
+        try {
+            return UsbConfigDescriptorImpl.of(descriptor);
+        } finally {
+            descriptor.close();
         }
     }
 
     @Override
     public byte[] path() {
-        try(var arena = Arena.openConfined()) {
-            var data = arena.allocate(16);
-            var result = LibUsb.libusb_get_port_numbers(device, data);
-            if(result < LibUsb.LIBUSB_SUCCESS) {
-                throw new RuntimeException("Failed to get device path: " + LibUsb.libusb_error_name(result));
-            }
+        synchronized(this) {
+            try(var arena = Arena.openConfined()) {
+                var data = arena.allocate(16);
+                if(retired) {
+                    throw new IllegalStateException("Device was disconnected");
+                }
+                var result = LibUsb.libusb_get_port_numbers(device, data);
+                if(result < LibUsb.LIBUSB_SUCCESS) {
+                    throw new RuntimeException("Failed to get device path: " + Utils.errorName(result));
+                }
 
-            var path = new byte[result];
-            data.asByteBuffer().get(path);
-            return path;
+                var path = new byte[result];
+                data.asByteBuffer().get(path);
+                return path;
+            }
         }
     }
 
     @Override
     public UsbDeviceHandle open() throws UsbException {
-        try(var session = Arena.openConfined()) {
-            var pointer = session.allocate(ValueLayout.ADDRESS);
-            var result = LibUsb.libusb_open(device, pointer);
-            if(result != LibUsb.LIBUSB_SUCCESS) {
-                throw new UsbException("Failed to open device: " + LibUsb.libusb_error_name(result));
+        synchronized(this) {
+            try(var session = Arena.openConfined()) {
+                var pointer = session.allocate(ValueLayout.ADDRESS);
+                var result = LibUsb.libusb_open(device(), pointer);
+                if(result != LibUsb.LIBUSB_SUCCESS) {
+                    throw new UsbException("Failed to open device: " + Utils.errorName(result));
+                }
+                
+                return new UsbDeviceHandleImpl(usb, this, new LibUsbDeviceHandle(pointer.get(ValueLayout.ADDRESS, 0)));
             }
-            
-            return new UsbDeviceHandleImpl(usb, new LibUsbDeviceHandle(pointer.get(ValueLayout.ADDRESS, 0)));
         }
     }
     
     @Override
     public void close() {
-        LibUsb.libusb_unref_device(device);
-        session.close();
+        synchronized(this) {
+            if(references > 0) {
+                references--;
+                LibUsb.libusb_unref_device(device);
+            }
+        }
+    }
+    
+    /**
+     * Takes a reference to the libusb device for a caller of {@link JUsb#devices()}, released by {@link #close()}.
+     */
+    void acquire() {
+        synchronized(this) {
+            LibUsb.libusb_ref_device(device);
+            references++;
+        }
+    }
+    
+    boolean referenced() {
+        synchronized(this) {
+            return references > 0;
+        }
+    }
+    
+    /**
+     * Drops the reference of the {@link DeviceRegistry} to the libusb device, called once the device is gone.
+     */
+    void retire() {
+        synchronized(this) {
+            if(!retired) {
+                retired = true;
+                LibUsb.libusb_unref_device(device);
+            }
+        }
+    }
+    
+    /**
+     * Drops every reference to the libusb device, called when the {@link JUsb} instance is closed since libusb can't be
+     * used afterwards.
+     */
+    void release() {
+        synchronized(this) {
+            retire();
+            while(references > 0) {
+                references--;
+                LibUsb.libusb_unref_device(device);
+            }
+        }
     }
 }
@@ -0,0 +1,29 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.descriptor.UsbEndpointDescriptor;
+import net.gudenau.jusb.internal.libusb.descriptor.LibUsbEndpointDescriptor;
+
+/**
+ * A heap copy of an endpoint descriptor.
+ */
+public record UsbEndpointDescriptorImpl(
+    byte bLength,
+    byte bDescriptorType,
+    byte bEndpointAddress,
+    byte bmAttributes,
+    short wMaxPacketSize,
+    byte bInterval,
+    byte bSynchAddress
+) implements UsbEndpointDescriptor {
+    static UsbEndpointDescriptorImpl of(LibUsbEndpointDescriptor descriptor) {
+        return new UsbEndpointDescriptorImpl(
+            descriptor.bLength(),
+            descriptor.bDescriptorType(),
+            descriptor.bEndpointAddress(),
+            descriptor.bmAttributes(),
+            descriptor.wMaxPacketSize(),
+            descriptor.bInterval(),
+            descriptor.bSynchAddress()
+        );
+    }
+}
@@ -0,0 +1,215 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbDirection;
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link Flow.Publisher} for an IN endpoint, every subscriber gets its own set of transfers and only as many
+ * transfers as the subscriber has requested items for are ever submitted.
+ */
+public final class UsbEndpointPublisher implements Flow.Publisher<ByteBuffer> {
+    private final UsbDeviceHandleImpl handle;
+    private final int endpoint;
+    private final boolean interrupt;
+    private final int transferCount;
+    private final int transferSize;
+
+    UsbEndpointPublisher(UsbDeviceHandleImpl handle, int endpoint, boolean interrupt, int transferCount, int transferSize) {
+        this.handle = handle;
+        this.endpoint = endpoint;
+        this.interrupt = interrupt;
+        this.transferCount = transferCount;
+        this.transferSize = transferSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber can't be null");
+
+        Subscription subscription;
+        try {
+            subscription = new Subscription(subscriber);
+        } catch(Throwable t) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) {}
+                @Override public void cancel() {}
+            });
+            subscriber.onError(t);
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final Arena session;
+        private final MemorySegment[] buffers;
+        private final UsbAsyncTransferImpl[] transfers;
+        private final int[] lengths;
+        private final boolean[] ready;
+
+        // Guarded by `this`, slots from head until tail are either in-flight or waiting to be delivered
+        private long demand;
+        private int head;
+        private int tail;
+        private int occupied;
+        private int inFlight;
+        private boolean terminated;
+        private boolean released;
+
+        private Subscription(Flow.Subscriber<? super ByteBuffer> subscriber) throws UsbException {
+            this.subscriber = subscriber;
+
+            session = Arena.openShared();
+            buffers = new MemorySegment[transferCount];
+            transfers = new UsbAsyncTransferImpl[transferCount];
+            lengths = new int[transferCount];
+            ready = new boolean[transferCount];
+
+            try {
+                for(int i = 0; i < transferCount; i++) {
+                    var transfer = handle.createTransfer();
+                    int index = i;
+                    buffers[i] = session.allocate(transferSize, 8);
+                    transfers[i] = transfer;
+                    if(interrupt) {
+                        transfer.interruptTransfer(endpoint, UsbDirection.IN, 0);
+                    } else {
+                        transfer.bulkTransfer(endpoint, UsbDirection.IN, 0);
+                    }
+                    transfer.buffer(buffers[i]);
+                    transfer.completion((status, length) -> complete(index, status, length));
+                }
+            } catch(Throwable t) {
+                released = true;
+                release();
+                throw t;
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized(this) {
+                if(terminated) {
+                    return;
+                }
+                if(n <= 0) {
+                    fail(new IllegalArgumentException("Subscribers must request a positive amount of items"));
+                } else {
+                    demand += n;
+                    if(demand < 0) {
+                        demand = Long.MAX_VALUE;
+                    }
+                    pump();
+                }
+                releaseIfDrained();
+            }
+        }
+
+        // Only call this in a `synchronized` block
+        private void pump() {
+            while(!terminated && occupied < transferCount && occupied < demand) {
+                var result = transfers[tail].submitInternal();
+                if(result != LibUsb.LIBUSB_SUCCESS) {
+                    fail(new UsbException("Failed to submit transfer: " + Utils.errorName(result)));
+                    return;
+                }
+                inFlight++;
+                occupied++;
+                tail = (tail + 1) % transferCount;
+            }
+        }
+
+        private void complete(int index, int status, int length) {
+            synchronized(this) {
+                inFlight--;
+
+                if(!terminated) {
+                    if(status == LibUsb.LIBUSB_TRANSFER_COMPLETED) {
+                        lengths[index] = length;
+                        ready[index] = true;
+                        deliver();
+                        pump();
+                    } else {
+                        fail(new UsbException("Failed to complete transfer: " + Utils.transferStatus(status)));
+                    }
+                }
+
+                releaseIfDrained();
+            }
+        }
+
+        // Only call this in a `synchronized` block
+        private void deliver() {
+            while(!terminated && ready[head]) {
+                ready[head] = false;
+                occupied--;
+                demand--;
+
+                // The subscriber may hold on to the buffer, so it gets its own copy.
+                var data = new byte[lengths[head]];
+                MemorySegment.copy(buffers[head], ValueLayout.JAVA_BYTE, 0, data, 0, data.length);
+                head = (head + 1) % transferCount;
+
+                try {
+                    subscriber.onNext(ByteBuffer.wrap(data));
+                } catch(Throwable t) {
+                    fail(t);
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized(this) {
+                stop();
+                releaseIfDrained();
+            }
+        }
+
+        // Only call this in a `synchronized` block
+        private void fail(Throwable t) {
+            if(!terminated) {
+                stop();
+                subscriber.onError(t);
+            }
+        }
+
+        // Only call this in a `synchronized` block
+        private void stop() {
+            if(!terminated) {
+                terminated = true;
+                for(var transfer : transfers) {
+                    transfer.cancel();
+                }
+            }
+        }
+
+        // Only call this in a `synchronized` block
+        private void releaseIfDrained() {
+            if(terminated && inFlight == 0 && !released) {
+                released = true;
+                release();
+            }
+        }
+
+        private void release() {
+            for(var transfer : transfers) {
+                if(transfer != null) {
+                    try {
+                        transfer.close();
+                    } catch(Throwable ignored) {}
+                }
+            }
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbEventLoop;
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+import net.gudenau.jusb.internal.libusb.LibUsbContext;
+import net.gudenau.jusb.internal.libusb.LibUsbPollfd;
+import net.gudenau.jusb.internal.libusb.LibUsbPollfdAddedCallback;
+import net.gudenau.jusb.internal.libusb.LibUsbPollfdRemovedCallback;
+import net.gudenau.jusb.internal.libusb.Timeval;
+
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentScope;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class UsbEventLoopImpl implements UsbEventLoop {
+    private final LibUsbContext context;
+    private volatile Listener listener;
+    // How deep the current thread is in handleEvents, several threads may handle events at the same time
+    private final ThreadLocal<int[]> handlingDepth = ThreadLocal.withInitial(() -> new int[1]);
+    // Only read by libusb, so every thread can share it
+    private final MemorySegment zeroTimeout;
+    
+    UsbEventLoopImpl(LibUsbContext context, SegmentScope scope) {
+        this.context = context;
+        zeroTimeout = new Timeval(SegmentAllocator.nativeAllocator(scope)).tv_sec(0).tv_usec(0).segment();
+        
+        var addedCallback = LibUsbPollfdAddedCallback.allocate((fd, events, user_data) -> {
+            var listener = this.listener;
+            if(listener != null) {
+                try {
+                    listener.added(fd, Short.toUnsignedInt(events));
+                } catch(Throwable t) {
+                    uncaught(t);
+                }
+            }
+        }, scope);
+        var removedCallback = LibUsbPollfdRemovedCallback.allocate((fd, user_data) -> {
+            var listener = this.listener;
+            if(listener != null) {
+                try {
+                    listener.removed(fd);
+                } catch(Throwable t) {
+                    uncaught(t);
+                }
+            }
+        }, scope);
+        LibUsb.libusb_set_pollfd_notifiers(context, addedCallback, removedCallback, MemorySegment.NULL);
+    }
+    
+    // Throwing from an upcall kills the JVM.
+    private static void uncaught(Throwable t) {
+        var thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+    
+    @Override
+    public List<PollFd> pollFds() throws UsbException {
+        var pollfds = LibUsb.libusb_get_pollfds(context);
+        if(pollfds.equals(MemorySegment.NULL)) {
+            throw new UsbException("Failed to get libusb file descriptors: not supported on this platform");
+        }
+        
+        try {
+            // A NULL terminated array of pointers
+            var fds = new ArrayList<PollFd>();
+            for(long i = 0; ; i++) {
+                var pointer = pollfds.getAtIndex(ValueLayout.ADDRESS, i);
+                if(pointer.equals(MemorySegment.NULL)) {
+                    break;
+                }
+                var pollfd = new LibUsbPollfd(MemorySegment.ofAddress(pointer.address(), LibUsbPollfd.LAYOUT.byteSize()));
+                fds.add(new PollFd(pollfd.fd(), Short.toUnsignedInt(pollfd.events())));
+            }
+            return Collections.unmodifiableList(fds);
+        } finally {
+            LibUsb.libusb_free_pollfds(pollfds);
+        }
+    }
+    
+    @Override
+    public void listener(Listener listener) {
+        this.listener = listener;
+    }
+    
+    @Override
+    public long nextTimeout() throws UsbException {
+        var timeout = new Timeval(Scratch.get());
+        var result = LibUsb.libusb_get_next_timeout(context, timeout.segment());
+        if(result < 0) {
+            throw new UsbException("Failed to get next libusb timeout: " + Utils.errorName(result));
+        } else if(result == 0) {
+            return -1;
+        }
+        
+        // Rounded up so waiting for the returned time never wakes up before the timeout expired
+        return timeout.tv_sec() * 1000 + (timeout.tv_usec() + 999) / 1000;
+    }
+    
+    @Override
+    public boolean timeoutsHandledByFds() {
+        return LibUsb.libusb_pollfds_handle_timeouts(context);
+    }
+    
+    @Override
+    public void handleEvents() throws UsbException {
+        var depth = handlingDepth.get();
+        depth[0]++;
+        int result;
+        try {
+            result = LibUsb.libusb_handle_events_timeout(context, zeroTimeout);
+        } finally {
+            depth[0]--;
+        }
+        if(result != LibUsb.LIBUSB_SUCCESS) {
+            throw new UsbException("Failed to handle libusb events: " + Utils.errorName(result));
+        }
+    }
+    
+    boolean isHandlingThread() {
+        return handlingDepth.get()[0] > 0;
+    }
+    
+    void close() {
+        listener = null;
+        LibUsb.libusb_set_pollfd_notifiers(context, MemorySegment.NULL, MemorySegment.NULL, MemorySegment.NULL);
+    }
+}
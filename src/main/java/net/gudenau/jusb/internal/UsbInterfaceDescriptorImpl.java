@@ -0,0 +1,40 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.descriptor.UsbEndpointDescriptor;
+import net.gudenau.jusb.descriptor.UsbInterfaceDescriptor;
+import net.gudenau.jusb.internal.libusb.descriptor.LibUsbInterfaceDescriptor;
+
+import java.util.List;
+
+/**
+ * A heap copy of an interface descriptor.
+ */
+public record UsbInterfaceDescriptorImpl(
+    byte bLength,
+    byte bDescriptorType,
+    byte bInterfaceNumber,
+    byte bAlternateSetting,
+    byte bNumEndpoints,
+    byte bInterfaceClass,
+    byte bInterfaceSubClass,
+    byte bInterfaceProtocol,
+    byte iInterface,
+    List<UsbEndpointDescriptor> endpoints
+) implements UsbInterfaceDescriptor {
+    static UsbInterfaceDescriptorImpl of(LibUsbInterfaceDescriptor descriptor) {
+        return new UsbInterfaceDescriptorImpl(
+            descriptor.bLength(),
+            descriptor.bDescriptorType(),
+            descriptor.bInterfaceNumber(),
+            descriptor.bAlternateSetting(),
+            descriptor.bNumEndpoints(),
+            descriptor.bInterfaceClass(),
+            descriptor.bInterfaceSubClass(),
+            descriptor.bInterfaceProtocol(),
+            descriptor.iInterface(),
+            descriptor.endpoints().stream()
+                .<UsbEndpointDescriptor>map(UsbEndpointDescriptorImpl::of)
+                .toList()
+        );
+    }
+}
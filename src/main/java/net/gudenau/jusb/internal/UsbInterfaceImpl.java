@@ -0,0 +1,20 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.descriptor.UsbInterface;
+import net.gudenau.jusb.descriptor.UsbInterfaceDescriptor;
+import net.gudenau.jusb.internal.libusb.descriptor.LibUsbInterface;
+
+import java.util.List;
+
+/**
+ * A heap copy of the alternate settings of an interface.
+ */
+public record UsbInterfaceImpl(List<UsbInterfaceDescriptor> altsetting) implements UsbInterface {
+    static UsbInterfaceImpl of(LibUsbInterface usbInterface) {
+        return new UsbInterfaceImpl(
+            usbInterface.altsetting().stream()
+                .<UsbInterfaceDescriptor>map(UsbInterfaceDescriptorImpl::of)
+                .toList()
+        );
+    }
+}
@@ -0,0 +1,193 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbDirection;
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.UsbStreamReader;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public final class UsbStreamReaderImpl implements UsbStreamReader {
+    private final JUsbImpl usb;
+    private final Consumer<ByteBuffer> consumer;
+    private final Arena session;
+    private final MemorySegment[] buffers;
+    private final UsbAsyncTransferImpl[] transfers;
+    private final int[] lengths;
+    private final boolean[] ready;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    // Guarded by `this`
+    private int head;
+    private int inFlight;
+    private boolean closing;
+    private boolean released;
+    private Throwable failure;
+
+    UsbStreamReaderImpl(UsbDeviceHandleImpl handle, int endpoint, int transferCount, int transferSize, Consumer<ByteBuffer> consumer) throws UsbException {
+        this.usb = handle.usb();
+        this.consumer = consumer;
+
+        session = Arena.openShared();
+        buffers = new MemorySegment[transferCount];
+        transfers = new UsbAsyncTransferImpl[transferCount];
+        lengths = new int[transferCount];
+        ready = new boolean[transferCount];
+
+        try {
+            for(int i = 0; i < transferCount; i++) {
+                var buffer = session.allocate(transferSize, 8);
+                var transfer = handle.createTransfer();
+                int index = i;
+                buffers[i] = buffer;
+                transfers[i] = transfer;
+                transfer.bulkTransfer(endpoint, UsbDirection.IN, 0);
+                transfer.buffer(buffer);
+                transfer.completion((status, length) -> complete(index, status, length));
+            }
+        } catch(Throwable t) {
+            release();
+            throw t;
+        }
+
+        Throwable error;
+        synchronized(this) {
+            for(var transfer : transfers) {
+                var result = transfer.submitInternal();
+                if(result != LibUsb.LIBUSB_SUCCESS) {
+                    fail(new UsbException("Failed to submit stream transfer: " + Utils.errorName(result)));
+                    break;
+                }
+                inFlight++;
+            }
+            releaseIfDrained();
+            // Early completions and the consumer can fail the stream as soon as the first transfer is submitted
+            error = failure;
+        }
+
+        if(error != null) {
+            close();
+            if(error instanceof UsbException exception) {
+                throw exception;
+            }
+            throw new UsbException("Failed to start stream", error);
+        }
+    }
+
+    private void complete(int index, int status, int length) {
+        synchronized(this) {
+            inFlight--;
+
+            switch(status) {
+                case LibUsb.LIBUSB_TRANSFER_COMPLETED -> {
+                    lengths[index] = length;
+                    ready[index] = true;
+                    deliver();
+                }
+
+                case LibUsb.LIBUSB_TRANSFER_CANCELLED -> {
+                    if(!closing) {
+                        fail(new UsbException("Stream transfer was cancelled"));
+                    }
+                }
+
+                default -> fail(new UsbException("Failed to complete stream transfer: " + Utils.transferStatus(status)));
+            }
+
+            releaseIfDrained();
+        }
+    }
+
+    // Hands completed buffers to the consumer in submission order and resubmits them.
+    private void deliver() {
+        while(ready[head] && !closing) {
+            ready[head] = false;
+
+            try {
+                consumer.accept(buffers[head].asSlice(0, lengths[head]).asByteBuffer());
+            } catch(Throwable t) {
+                fail(t);
+                return;
+            }
+            if(closing) {
+                return;
+            }
+
+            var result = transfers[head].submitInternal();
+            if(result != LibUsb.LIBUSB_SUCCESS) {
+                fail(new UsbException("Failed to resubmit stream transfer: " + Utils.errorName(result)));
+                return;
+            }
+            inFlight++;
+
+            head = (head + 1) % transfers.length;
+        }
+    }
+
+    // Only call this in a `synchronized` block
+    private void fail(Throwable t) {
+        if(failure == null) {
+            failure = t;
+        }
+        stop();
+    }
+
+    // Only call this in a `synchronized` block
+    private void stop() {
+        if(!closing) {
+            closing = true;
+            for(var transfer : transfers) {
+                transfer.cancel();
+            }
+        }
+    }
+
+    // Only call this in a `synchronized` block
+    private void releaseIfDrained() {
+        if(closing && inFlight == 0 && !released) {
+            release();
+        }
+    }
+
+    private void release() {
+        released = true;
+        for(var transfer : transfers) {
+            if(transfer != null) {
+                try {
+                    transfer.close();
+                } catch(Throwable ignored) {}
+            }
+        }
+        session.close();
+
+        if(failure == null) {
+            completion.complete(null);
+        } else {
+            completion.completeExceptionally(failure);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    @Override
+    public void close() {
+        synchronized(this) {
+            stop();
+            releaseIfDrained();
+        }
+
+        // The event thread has to keep running to drain the cancelled transfers.
+        if(!usb.isEventThread()) {
+            try {
+                completion.join();
+            } catch(Throwable ignored) {}
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbDirection;
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.UsbStreamWriter;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+public final class UsbStreamWriterImpl implements UsbStreamWriter {
+    private final JUsbImpl usb;
+    private final Arena session;
+    private final MemorySegment[] buffers;
+    private final UsbAsyncTransferImpl[] transfers;
+    private final int[] requested;
+
+    // Guarded by `this`
+    private final int[] free;
+    private int freeCount;
+    private int inFlight;
+    private long written;
+    private boolean closed;
+    private UsbException failure;
+
+    UsbStreamWriterImpl(UsbDeviceHandleImpl handle, int endpoint, int transferCount, int transferSize, long timeout) throws UsbException {
+        this.usb = handle.usb();
+
+        session = Arena.openShared();
+        buffers = new MemorySegment[transferCount];
+        transfers = new UsbAsyncTransferImpl[transferCount];
+        requested = new int[transferCount];
+        free = new int[transferCount];
+
+        try {
+            for(int i = 0; i < transferCount; i++) {
+                var transfer = handle.createTransfer();
+                int index = i;
+                buffers[i] = session.allocate(transferSize, 8);
+                transfers[i] = transfer;
+                transfer.bulkTransfer(endpoint, UsbDirection.OUT, timeout);
+                transfer.completion((status, length) -> complete(index, status, length));
+                free[freeCount++] = i;
+            }
+        } catch(Throwable t) {
+            release();
+            throw t;
+        }
+    }
+
+    private void complete(int index, int status, int length) {
+        synchronized(this) {
+            inFlight--;
+            free[freeCount++] = index;
+
+            switch(status) {
+                case LibUsb.LIBUSB_TRANSFER_COMPLETED -> {
+                    written += length;
+                    if(length != requested[index]) {
+                        fail(new UsbException("Short stream write, " + length + " of " + requested[index] + " bytes were written"));
+                    }
+                }
+
+                case LibUsb.LIBUSB_TRANSFER_TIMED_OUT -> {
+                    written += length;
+                    fail(new UsbException("Stream write timed out"));
+                }
+
+                default -> fail(new UsbException("Failed to complete stream write: " + Utils.transferStatus(status)));
+            }
+
+            notifyAll();
+        }
+    }
+
+    // Only call this in a `synchronized` block
+    private void fail(UsbException exception) {
+        if(failure == null) {
+            failure = exception;
+        }
+    }
+
+    // Only call this in a `synchronized` block
+    private void validateState() throws UsbException {
+        if(closed) {
+            throw new IllegalStateException("Can not use a closed writer");
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    // Only call this in a `synchronized` block
+    private void cancelAll() {
+        for(var transfer : transfers) {
+            transfer.cancel();
+        }
+    }
+
+    // Only call this in a `synchronized` block
+    private void await() throws InterruptedException {
+        if(usb.isEventThread()) {
+            throw new IllegalStateException("Can not block the event thread");
+        }
+        wait();
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws UsbException, InterruptedException {
+        Objects.requireNonNull(buffer, "buffer can't be null");
+
+        while(buffer.hasRemaining()) {
+            int index;
+            synchronized(this) {
+                validateState();
+                while(freeCount == 0) {
+                    await();
+                    validateState();
+                }
+                index = free[--freeCount];
+                inFlight++;
+            }
+
+            var segment = buffers[index];
+            int length = (int) Math.min(buffer.remaining(), segment.byteSize());
+            MemorySegment.copy(MemorySegment.ofBuffer(buffer), 0, segment, 0, length);
+            buffer.position(buffer.position() + length);
+
+            var transfer = transfers[index];
+            requested[index] = length;
+            transfer.buffer(segment.asSlice(0, length));
+            var result = transfer.submitInternal();
+            if(result != LibUsb.LIBUSB_SUCCESS) {
+                synchronized(this) {
+                    inFlight--;
+                    free[freeCount++] = index;
+                    fail(new UsbException("Failed to submit stream write: " + Utils.errorName(result)));
+                    notifyAll();
+                    throw failure;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws UsbException, InterruptedException {
+        synchronized(this) {
+            validateState();
+            while(inFlight > 0) {
+                await();
+            }
+            validateState();
+        }
+    }
+
+    @Override
+    public long written() {
+        synchronized(this) {
+            return written;
+        }
+    }
+
+    @Override
+    public int inFlight() {
+        synchronized(this) {
+            return inFlight;
+        }
+    }
+
+    private void release() {
+        for(var transfer : transfers) {
+            if(transfer != null) {
+                try {
+                    transfer.close();
+                } catch(Throwable ignored) {}
+            }
+        }
+        session.close();
+    }
+
+    @Override
+    public void close() throws UsbException {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+
+            // There is nothing left to flush for a failed writer
+            if(failure != null) {
+                cancelAll();
+            }
+            boolean interrupted = false;
+            while(inFlight > 0) {
+                try {
+                    await();
+                } catch(InterruptedException e) {
+                    if(!interrupted) {
+                        interrupted = true;
+                        // The buffers can only be freed once libusb is done with them, so the cancellations are still
+                        // waited for
+                        fail(new UsbException("Interrupted while closing, the pending writes were cancelled"));
+                        cancelAll();
+                    }
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            closed = true;
+            release();
+
+            if(failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.UsbAsyncTransfer;
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.UsbTransferGroup;
+import net.gudenau.jusb.UsbTransferStatus;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+public final class UsbTransferGroupImpl implements UsbTransferGroup {
+    private final UsbDeviceHandleImpl handle;
+    private final UsbAsyncTransfer.Listener listener = this::completed;
+    // Only modified while the group is idle, the event thread reads them after a submission
+    private final List<UsbAsyncTransferImpl> transfers = new ArrayList<>();
+    private final Map<UsbAsyncTransfer, Integer> indices = new IdentityHashMap<>();
+    private UsbTransferStatus[] statuses = new UsbTransferStatus[0];
+    
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final AtomicReference<UsbAsyncTransfer> first = new AtomicReference<>();
+    private final AtomicReference<UsbAsyncTransfer> failure = new AtomicReference<>();
+    private volatile Thread waiter;
+    private volatile boolean waitingForAny;
+    
+    UsbTransferGroupImpl(UsbDeviceHandleImpl handle) {
+        this.handle = handle;
+    }
+    
+    // Invoked on the event thread for every transfer of the group
+    private void completed(UsbAsyncTransfer transfer, UsbTransferStatus status, int length, MemorySegment buffer) {
+        statuses[indices.get(transfer)] = status;
+        var isFirst = first.compareAndSet(null, transfer);
+        if(status != UsbTransferStatus.COMPLETED && failure.compareAndSet(null, transfer)) {
+            cancel();
+        }
+        
+        var left = remaining.decrementAndGet();
+        if(left == 0 || (isFirst && waitingForAny)) {
+            wake();
+        }
+    }
+    
+    private void wake() {
+        var waiter = this.waiter;
+        if(waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+    
+    private void validateIdle() {
+        if(remaining.get() != 0) {
+            throw new IllegalStateException("Can not modify an in-flight transfer group");
+        }
+    }
+    
+    @Override
+    public void add(UsbAsyncTransfer transfer) {
+        Objects.requireNonNull(transfer, "transfer can't be null");
+        validateIdle();
+        if(!(transfer instanceof UsbAsyncTransferImpl impl) || impl.handle() != handle) {
+            throw new IllegalArgumentException("Transfer does not belong to this handle");
+        }
+        if(indices.putIfAbsent(transfer, transfers.size()) != null) {
+            throw new IllegalArgumentException("Transfer is already part of this group");
+        }
+        transfers.add(impl);
+        statuses = Arrays.copyOf(statuses, transfers.size());
+    }
+    
+    @Override
+    public void clear() {
+        validateIdle();
+        transfers.clear();
+        indices.clear();
+        statuses = new UsbTransferStatus[0];
+    }
+    
+    @Override
+    public void submit() throws UsbException {
+        var count = transfers.size();
+        if(!remaining.compareAndSet(0, count)) {
+            throw new IllegalStateException("Can not submit an in-flight transfer group");
+        }
+        Arrays.fill(statuses, null);
+        first.set(null);
+        failure.set(null);
+        
+        for(int i = 0; i < count; i++) {
+            var transfer = transfers.get(i);
+            if(failure.get() != null) {
+                // A transfer already failed, the rest would only be cancelled
+                skip(count - i);
+                return;
+            }
+            
+            try {
+                transfer.submit(listener);
+            } catch(Throwable t) {
+                statuses[i] = UsbTransferStatus.ERROR;
+                failure.compareAndSet(null, transfer);
+                cancel();
+                skip(count - i);
+                throw t;
+            }
+            
+            // A failure between the check and the submission would not have cancelled this transfer
+            if(failure.get() != null) {
+                transfer.cancel();
+            }
+        }
+    }
+    
+    private void skip(int transfers) {
+        if(remaining.addAndGet(-transfers) == 0) {
+            wake();
+        }
+    }
+    
+    @Override
+    public void awaitAll() throws InterruptedException {
+        await(false, 0);
+    }
+    
+    @Override
+    public boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(false, deadline(timeout, unit));
+    }
+    
+    @Override
+    public UsbAsyncTransfer awaitAny() throws InterruptedException {
+        await(true, 0);
+        return first.get();
+    }
+    
+    @Override
+    public UsbAsyncTransfer awaitAny(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, deadline(timeout, unit)) ? first.get() : null;
+    }
+    
+    private static long deadline(long timeout, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit can't be null");
+        // 0 means no deadline
+        return (System.nanoTime() + unit.toNanos(timeout)) | 1;
+    }
+    
+    private boolean await(boolean any, long deadline) throws InterruptedException {
+        if(handle.usb().isEventThread()) {
+            throw new IllegalStateException("Can not wait for a transfer group on the event thread");
+        }
+        
+        waitingForAny = any;
+        waiter = Thread.currentThread();
+        try {
+            while(remaining.get() != 0 && !(any && first.get() != null)) {
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if(deadline == 0) {
+                    LockSupport.park(this);
+                } else {
+                    var left = deadline - System.nanoTime();
+                    if(left <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, left);
+                }
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+    
+    @Override
+    public UsbTransferStatus status(UsbAsyncTransfer transfer) {
+        var index = indices.get(transfer);
+        if(index == null) {
+            throw new IllegalArgumentException("Transfer is not part of this group");
+        }
+        return statuses[index];
+    }
+    
+    @Override
+    public UsbAsyncTransfer failure() {
+        return failure.get();
+    }
+    
+    @Override
+    public void cancel() {
+        for(var transfer : transfers) {
+            transfer.cancel();
+        }
+    }
+}
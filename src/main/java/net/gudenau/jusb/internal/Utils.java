@@ -1,11 +1,18 @@
 package net.gudenau.jusb.internal;
 
 import net.gudenau.jusb.UsbDirection;
+import net.gudenau.jusb.UsbTransferStatus;
 import net.gudenau.jusb.internal.libusb.LibUsb;
 
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
 import java.util.Objects;
 
 final class Utils {
+    private static final UsbTransferStatus[] TRANSFER_STATUSES = UsbTransferStatus.values();
+    private static final ValueLayout.OfShort LE16 = ValueLayout.JAVA_SHORT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    
     public static byte endpoint(int endpoint, UsbDirection direction) {
         Objects.requireNonNull(direction, "direction can't be null");
         return (byte)((endpoint & 0x7F) | (direction == UsbDirection.IN ? LibUsb.LIBUSB_ENDPOINT_IN : LibUsb.LIBUSB_ENDPOINT_OUT));
@@ -15,6 +22,66 @@ final class Utils {
         return (int) Math.max(0, Math.min(value, 0xFFFFFFFFL));
     }
     
+    // The ordinals of UsbTransferStatus match libusb_transfer_status
+    public static UsbTransferStatus transferStatus(int status) {
+        return status >= 0 && status < TRANSFER_STATUSES.length ? TRANSFER_STATUSES[status] : UsbTransferStatus.ERROR;
+    }
+    
+    /**
+     * Maps an error of a synchronous libusb transfer function to the matching transfer status.
+     *
+     * @return The status or null if the error doesn't describe the outcome of a transfer
+     */
+    public static UsbTransferStatus errorStatus(int error) {
+        return switch(error) {
+            case LibUsb.LIBUSB_SUCCESS -> UsbTransferStatus.COMPLETED;
+            case LibUsb.LIBUSB_ERROR_TIMEOUT -> UsbTransferStatus.TIMED_OUT;
+            case LibUsb.LIBUSB_ERROR_PIPE -> UsbTransferStatus.STALL;
+            case LibUsb.LIBUSB_ERROR_OVERFLOW -> UsbTransferStatus.OVERFLOW;
+            case LibUsb.LIBUSB_ERROR_NO_DEVICE -> UsbTransferStatus.NO_DEVICE;
+            case LibUsb.LIBUSB_ERROR_INTERRUPTED -> UsbTransferStatus.CANCELLED;
+            case LibUsb.LIBUSB_ERROR_IO -> UsbTransferStatus.ERROR;
+            default -> null;
+        };
+    }
+    
+    /**
+     * Gets the name of a libusb error code like {@code libusb_error_name}, the names of the known codes are cached so
+     * building an error message doesn't need a downcall.
+     */
+    public static String errorName(int error) {
+        if(error <= 0 && error > -ErrorNames.NAMES.length) {
+            return ErrorNames.NAMES[-error];
+        }
+        if(error == LibUsb.LIBUSB_ERROR_OTHER) {
+            return ErrorNames.OTHER;
+        }
+        return LibUsb.libusb_error_name(error);
+    }
+    
+    /**
+     * Writes a control setup packet into the start of a buffer, see {@code libusb_fill_control_setup}.
+     */
+    public static void fillControlSetup(MemorySegment buffer, int requestType, int request, int value, int index, int length) {
+        buffer.set(ValueLayout.JAVA_BYTE, 0, (byte) requestType);
+        buffer.set(ValueLayout.JAVA_BYTE, 1, (byte) request);
+        buffer.set(LE16, 2, (short) value);
+        buffer.set(LE16, 4, (short) index);
+        buffer.set(LE16, 6, (short) length);
+    }
+    
+    private static final class ErrorNames {
+        // LIBUSB_SUCCESS through LIBUSB_ERROR_NOT_SUPPORTED, indexed by the negated code
+        private static final String[] NAMES = new String[-LibUsb.LIBUSB_ERROR_NOT_SUPPORTED + 1];
+        private static final String OTHER = LibUsb.libusb_error_name(LibUsb.LIBUSB_ERROR_OTHER);
+        
+        static {
+            for(int i = 0; i < NAMES.length; i++) {
+                NAMES[i] = LibUsb.libusb_error_name(-i);
+            }
+        }
+    }
+    
     private Utils() {
         throw new AssertionError();
     }
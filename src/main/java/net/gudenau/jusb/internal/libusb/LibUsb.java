@@ -46,6 +46,8 @@ public final class LibUsb {
     public static final int LIBUSB_CAP_HAS_HID_ACCESS = 0x0100;
     public static final int LIBUSB_CAP_SUPPORTS_DETACH_KERNEL_DRIVER = 0x0101;
     
+    public static final int LIBUSB_CONTROL_SETUP_SIZE = 8;
+    
     public static final int LIBUSB_ENDPOINT_OUT = 0x00;
     public static final int LIBUSB_ENDPOINT_IN = 0x80;
     
@@ -273,6 +275,24 @@ public final class LibUsb {
         }
     }
     
+    private static final MethodHandle libusb_release_interface;
+    public static int libusb_release_interface(LibUsbDeviceHandle dev_handle, int interface_number) {
+        try {
+            return (int) libusb_release_interface.invokeExact(dev_handle.address(), interface_number);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_release_interface", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_set_interface_alt_setting;
+    public static int libusb_set_interface_alt_setting(LibUsbDeviceHandle dev_handle, int interface_number, int alternate_setting) {
+        try {
+            return (int) libusb_set_interface_alt_setting.invokeExact(dev_handle.address(), interface_number, alternate_setting);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_set_interface_alt_setting", e);
+        }
+    }
+    
     private static final MethodHandle libusb_hotplug_register_callback;
     public static int libusb_hotplug_register_callback(LibUsbContext ctx, int events, int flags, int vendor_id, int product_id, int dev_class, MemorySegment cb_fn, MemorySegment user_data, MemorySegment callback_handle) {
         try {
@@ -291,6 +311,60 @@ public final class LibUsb {
         }
     }
     
+    private static final MethodHandle libusb_handle_events_timeout;
+    public static int libusb_handle_events_timeout(LibUsbContext ctx, MemorySegment tv) {
+        try {
+            return (int) libusb_handle_events_timeout.invokeExact(context(ctx), tv);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_handle_events_timeout", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_get_next_timeout;
+    public static int libusb_get_next_timeout(LibUsbContext ctx, MemorySegment tv) {
+        try {
+            return (int) libusb_get_next_timeout.invokeExact(context(ctx), tv);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_get_next_timeout", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_pollfds_handle_timeouts;
+    public static boolean libusb_pollfds_handle_timeouts(LibUsbContext ctx) {
+        try {
+            return (int) libusb_pollfds_handle_timeouts.invokeExact(context(ctx)) != 0;
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_pollfds_handle_timeouts", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_get_pollfds;
+    public static MemorySegment libusb_get_pollfds(LibUsbContext ctx) {
+        try {
+            return (MemorySegment) libusb_get_pollfds.invokeExact(context(ctx));
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_get_pollfds", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_free_pollfds;
+    public static void libusb_free_pollfds(MemorySegment pollfds) {
+        try {
+            libusb_free_pollfds.invokeExact(pollfds);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_free_pollfds", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_set_pollfd_notifiers;
+    public static void libusb_set_pollfd_notifiers(LibUsbContext ctx, MemorySegment added_cb, MemorySegment removed_cb, MemorySegment user_data) {
+        try {
+            libusb_set_pollfd_notifiers.invokeExact(context(ctx), added_cb, removed_cb, user_data);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_set_pollfd_notifiers", e);
+        }
+    }
+    
     private static final MethodHandle libusb_hotplug_deregister_callback;
     public static void libusb_hotplug_deregister_callback(LibUsbContext ctx, int callback_handle) {
         try {
@@ -303,7 +377,8 @@ public final class LibUsb {
     private static final MethodHandle libusb_alloc_transfer;
     public static MemorySegment libusb_alloc_transfer(int iso_packets) {
         try {
-            return (MemorySegment) libusb_alloc_transfer.invokeExact(iso_packets);
+            var transfer = (MemorySegment) libusb_alloc_transfer.invokeExact(iso_packets);
+            return transfer.equals(MemorySegment.NULL) ? transfer : MemorySegment.ofAddress(transfer.address(), LibUsbTransfer.byteSize(iso_packets));
         } catch(Throwable e) {
             throw new RuntimeException("Failed to invoke libusb_alloc_transfer", e);
         }
@@ -327,6 +402,87 @@ public final class LibUsb {
         }
     }
 
+    private static final MethodHandle libusb_cancel_transfer;
+    public static int libusb_cancel_transfer(LibUsbTransfer transfer) {
+        try {
+            return (int) libusb_cancel_transfer.invokeExact(transfer.segment());
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_cancel_transfer", e);
+        }
+    }
+
+    private static final MethodHandle libusb_alloc_streams;
+    public static int libusb_alloc_streams(LibUsbDeviceHandle dev_handle, int num_streams, MemorySegment endpoints) {
+        try {
+            return (int) libusb_alloc_streams.invokeExact(dev_handle.address(), num_streams, endpoints, (int) endpoints.byteSize());
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_alloc_streams", e);
+        }
+    }
+
+    private static final MethodHandle libusb_free_streams;
+    public static int libusb_free_streams(LibUsbDeviceHandle dev_handle, MemorySegment endpoints) {
+        try {
+            return (int) libusb_free_streams.invokeExact(dev_handle.address(), endpoints, (int) endpoints.byteSize());
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_free_streams", e);
+        }
+    }
+
+    private static final MethodHandle libusb_transfer_set_stream_id;
+    public static void libusb_transfer_set_stream_id(LibUsbTransfer transfer, int stream_id) {
+        try {
+            libusb_transfer_set_stream_id.invokeExact(transfer.segment(), stream_id);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_transfer_set_stream_id", e);
+        }
+    }
+
+    private static final MethodHandle libusb_transfer_get_stream_id;
+    public static int libusb_transfer_get_stream_id(LibUsbTransfer transfer) {
+        try {
+            return (int) libusb_transfer_get_stream_id.invokeExact(transfer.segment());
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_transfer_get_stream_id", e);
+        }
+    }
+
+    private static final MethodHandle libusb_get_device;
+    public static LibUsbDevice libusb_get_device(LibUsbDeviceHandle dev_handle) {
+        try {
+            return new LibUsbDevice((MemorySegment) libusb_get_device.invokeExact(dev_handle.address()));
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_get_device", e);
+        }
+    }
+
+    private static final MethodHandle libusb_dev_mem_alloc;
+    public static MemorySegment libusb_dev_mem_alloc(LibUsbDeviceHandle dev_handle, long length) {
+        try {
+            return (MemorySegment) libusb_dev_mem_alloc.invokeExact(dev_handle.address(), length);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_dev_mem_alloc", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_dev_mem_free;
+    public static int libusb_dev_mem_free(LibUsbDeviceHandle dev_handle, MemorySegment buffer) {
+        try {
+            return (int) libusb_dev_mem_free.invokeExact(dev_handle.address(), buffer, buffer.byteSize());
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_dev_mem_free", e);
+        }
+    }
+    
+    private static final MethodHandle libusb_get_max_iso_packet_size;
+    public static int libusb_get_max_iso_packet_size(LibUsbDevice dev, byte endpoint) {
+        try {
+            return (int) libusb_get_max_iso_packet_size.invokeExact(dev.address(), endpoint);
+        } catch(Throwable e) {
+            throw new RuntimeException("Failed to invoke libusb_get_max_iso_packet_size", e);
+        }
+    }
+
     private static final MethodHandle libusb_get_active_config_descriptor;
     public static int libusb_get_active_config_descriptor(LibUsbDevice device, MemorySegment config) {
         try {
@@ -366,7 +522,7 @@ public final class LibUsb {
     public static final int LIBUSB_REQUEST_GET_DESCRIPTOR = 0x06;
     public static final int LIBUSB_DT_STRING = 0x03;
     public static int libusb_get_string_descriptor(LibUsbDeviceHandle dev_handle, byte desc_index, short langid, MemorySegment data) {
-        return libusb_control_transfer(dev_handle, (byte) LIBUSB_ENDPOINT_IN, (byte) LIBUSB_REQUEST_GET_DESCRIPTOR, (short)((LIBUSB_DT_STRING << 8) | desc_index), langid, data, (short) data.byteSize(), 1000);
+        return libusb_control_transfer(dev_handle, (byte) LIBUSB_ENDPOINT_IN, (byte) LIBUSB_REQUEST_GET_DESCRIPTOR, (short)((LIBUSB_DT_STRING << 8) | (desc_index & 0xFF)), langid, data, (short) data.byteSize(), 1000);
     }
 
     private static final MethodHandle libusb_get_port_numbers;
@@ -406,12 +562,29 @@ public final class LibUsb {
         libusb_bulk_transfer = binder.bind("libusb_bulk_transfer", JAVA_INT, ADDRESS, JAVA_BYTE, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT);
         libusb_interrupt_transfer = binder.bind("libusb_interrupt_transfer", JAVA_INT, ADDRESS, JAVA_BYTE, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT);
         libusb_claim_interface = binder.bind("libusb_claim_interface", JAVA_INT, ADDRESS, JAVA_INT);
+        libusb_release_interface = binder.bind("libusb_release_interface", JAVA_INT, ADDRESS, JAVA_INT);
+        libusb_set_interface_alt_setting = binder.bind("libusb_set_interface_alt_setting", JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT);
         libusb_hotplug_register_callback = binder.bind("libusb_hotplug_register_callback", JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, ADDRESS);
         libusb_handle_events_timeout_completed = binder.bind("libusb_handle_events_timeout_completed", JAVA_INT, ADDRESS, ADDRESS, ADDRESS);
+        libusb_handle_events_timeout = binder.bind("libusb_handle_events_timeout", JAVA_INT, ADDRESS, ADDRESS);
+        libusb_get_next_timeout = binder.bind("libusb_get_next_timeout", JAVA_INT, ADDRESS, ADDRESS);
+        libusb_pollfds_handle_timeouts = binder.bind("libusb_pollfds_handle_timeouts", JAVA_INT, ADDRESS);
+        libusb_get_pollfds = binder.bind("libusb_get_pollfds", UNBOUND_ADDRESS, ADDRESS);
+        libusb_free_pollfds = binder.bind("libusb_free_pollfds", null, ADDRESS);
+        libusb_set_pollfd_notifiers = binder.bind("libusb_set_pollfd_notifiers", null, ADDRESS, ADDRESS, ADDRESS, ADDRESS);
         libusb_hotplug_deregister_callback = binder.bind("libusb_hotplug_deregister_callback", null, ADDRESS, JAVA_INT);
         libusb_alloc_transfer = binder.bind("libusb_alloc_transfer", ADDRESS, JAVA_INT);
         libusb_free_transfer = binder.bind("libusb_free_transfer", null, ADDRESS);
         libusb_submit_transfer = binder.bind("libusb_submit_transfer", JAVA_INT, ADDRESS);
+        libusb_cancel_transfer = binder.bind("libusb_cancel_transfer", JAVA_INT, ADDRESS);
+        libusb_alloc_streams = binder.bind("libusb_alloc_streams", JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT);
+        libusb_free_streams = binder.bind("libusb_free_streams", JAVA_INT, ADDRESS, ADDRESS, JAVA_INT);
+        libusb_transfer_set_stream_id = binder.bind("libusb_transfer_set_stream_id", null, ADDRESS, JAVA_INT);
+        libusb_transfer_get_stream_id = binder.bind("libusb_transfer_get_stream_id", JAVA_INT, ADDRESS);
+        libusb_get_device = binder.bind("libusb_get_device", ADDRESS, ADDRESS);
+        libusb_dev_mem_alloc = binder.bind("libusb_dev_mem_alloc", ADDRESS, ADDRESS, JAVA_LONG);
+        libusb_dev_mem_free = binder.bind("libusb_dev_mem_free", JAVA_INT, ADDRESS, ADDRESS, JAVA_LONG);
+        libusb_get_max_iso_packet_size = binder.bind("libusb_get_max_iso_packet_size", JAVA_INT, ADDRESS, JAVA_BYTE);
         libusb_get_active_config_descriptor = binder.bind("libusb_get_active_config_descriptor", JAVA_INT, ADDRESS, ADDRESS);
         libusb_get_config_descriptor = binder.bind("libusb_get_config_descriptor", JAVA_INT, ADDRESS, JAVA_BYTE, ADDRESS);
         libusb_get_config_descriptor_by_value = binder.bind("libusb_get_config_descriptor_by_value", JAVA_INT, ADDRESS, JAVA_BYTE, ADDRESS);
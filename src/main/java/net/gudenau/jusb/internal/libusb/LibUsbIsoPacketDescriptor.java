@@ -0,0 +1,46 @@
+package net.gudenau.jusb.internal.libusb;
+
+import java.lang.foreign.GroupLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.VarHandle;
+
+import static net.gudenau.jusb.internal.ForeignUtils.*;
+
+public record LibUsbIsoPacketDescriptor(MemorySegment segment) {
+    static final GroupLayout LAYOUT = structure(
+        U32.withName("length"),
+        U32.withName("actual_length"),
+        U32.withName("status")
+    );
+    
+    private static final VarHandle length = layoutHandle(LAYOUT, "length");
+    private static final VarHandle actual_length = layoutHandle(LAYOUT, "actual_length");
+    private static final VarHandle status = layoutHandle(LAYOUT, "status");
+    
+    public int length() {
+        return (int) length.get(segment);
+    }
+    
+    public int actual_length() {
+        return (int) actual_length.get(segment);
+    }
+    
+    public int status() {
+        return (int) status.get(segment);
+    }
+    
+    public LibUsbIsoPacketDescriptor length(int value) {
+        length.set(segment, value);
+        return this;
+    }
+    
+    public LibUsbIsoPacketDescriptor actual_length(int value) {
+        actual_length.set(segment, value);
+        return this;
+    }
+    
+    public LibUsbIsoPacketDescriptor status(int value) {
+        status.set(segment, value);
+        return this;
+    }
+}
@@ -0,0 +1,29 @@
+package net.gudenau.jusb.internal.libusb;
+
+import java.lang.foreign.GroupLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.VarHandle;
+
+import static net.gudenau.jusb.internal.ForeignUtils.*;
+
+public record LibUsbPollfd(MemorySegment segment) {
+    public static final GroupLayout LAYOUT = structure(
+        S32.withName("fd"),
+        S16.withName("events")
+    );
+    
+    private static final VarHandle fd = layoutHandle(LAYOUT, "fd");
+    private static final VarHandle events = layoutHandle(LAYOUT, "events");
+    
+    public LibUsbPollfd {
+        verifySize(segment, LAYOUT);
+    }
+    
+    public int fd() {
+        return (int) fd.get(segment);
+    }
+    
+    public short events() {
+        return (short) events.get(segment);
+    }
+}
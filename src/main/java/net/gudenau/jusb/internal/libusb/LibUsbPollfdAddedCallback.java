@@ -0,0 +1,44 @@
+package net.gudenau.jusb.internal.libusb;
+
+import net.gudenau.jusb.internal.ForeignUtils;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+@FunctionalInterface
+public interface LibUsbPollfdAddedCallback {
+    void invoke(int fd, short events, MemorySegment user_data);
+    
+    static MemorySegment allocate(LibUsbPollfdAddedCallback callback, SegmentScope scope) {
+        return ForeignUtils.upcall(OfAddress.BASE_HANDLE.bindTo(callback), OfAddress.DESCRIPTOR, scope);
+    }
+    
+    static LibUsbPollfdAddedCallback ofAddress(MemorySegment address) {
+        return new OfAddress(address);
+    }
+    
+    final class OfAddress implements LibUsbPollfdAddedCallback {
+        private static final FunctionDescriptor DESCRIPTOR = FunctionDescriptor.ofVoid(JAVA_INT, JAVA_SHORT, ADDRESS);
+        private static final MethodHandle DOWNCALL = ForeignUtils.downcall(DESCRIPTOR);
+        private static final MethodHandle BASE_HANDLE = ForeignUtils.findBaseHandle(LibUsbPollfdAddedCallback.class, DESCRIPTOR);
+        
+        private final MethodHandle handle;
+        
+        public OfAddress(MemorySegment address) {
+            handle = DOWNCALL.bindTo(address);
+        }
+        
+        @Override
+        public void invoke(int fd, short events, MemorySegment user_data) {
+            try {
+                handle.invokeExact(fd, events, user_data);
+            } catch(Throwable e) {
+                throw new RuntimeException("Failed to invoke LibUsbPollfdAddedCallback", e);
+            }
+        }
+    }
+}
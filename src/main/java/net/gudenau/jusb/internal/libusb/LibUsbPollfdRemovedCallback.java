@@ -0,0 +1,43 @@
+package net.gudenau.jusb.internal.libusb;
+
+import net.gudenau.jusb.internal.ForeignUtils;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+@FunctionalInterface
+public interface LibUsbPollfdRemovedCallback {
+    void invoke(int fd, MemorySegment user_data);
+    
+    static MemorySegment allocate(LibUsbPollfdRemovedCallback callback, SegmentScope scope) {
+        return ForeignUtils.upcall(OfAddress.BASE_HANDLE.bindTo(callback), OfAddress.DESCRIPTOR, scope);
+    }
+    
+    static LibUsbPollfdRemovedCallback ofAddress(MemorySegment address) {
+        return new OfAddress(address);
+    }
+    
+    final class OfAddress implements LibUsbPollfdRemovedCallback {
+        private static final FunctionDescriptor DESCRIPTOR = FunctionDescriptor.ofVoid(JAVA_INT, ADDRESS);
+        private static final MethodHandle DOWNCALL = ForeignUtils.downcall(DESCRIPTOR);
+        private static final MethodHandle BASE_HANDLE = ForeignUtils.findBaseHandle(LibUsbPollfdRemovedCallback.class, DESCRIPTOR);
+        
+        private final MethodHandle handle;
+        
+        public OfAddress(MemorySegment address) {
+            handle = DOWNCALL.bindTo(address);
+        }
+        
+        @Override
+        public void invoke(int fd, MemorySegment user_data) {
+            try {
+                handle.invokeExact(fd, user_data);
+            } catch(Throwable e) {
+                throw new RuntimeException("Failed to invoke LibUsbPollfdRemovedCallback", e);
+            }
+        }
+    }
+}
@@ -25,6 +25,9 @@ public record LibUsbTransfer(MemorySegment segment) {
         // libusb_iso_packet_descriptor iso_packet_desc[0]
     );
     
+    // The flexible array follows num_iso_packets directly, not the padded end of LAYOUT
+    private static final long ISO_PACKET_DESC_OFFSET = LAYOUT.byteOffset(MemoryLayout.PathElement.groupElement("num_iso_packets")) + S32.byteSize();
+    
     private static final VarHandle dev_handle = layoutHandle(LAYOUT, "dev_handle");
     private static final VarHandle flags = layoutHandle(LAYOUT, "flags");
     private static final VarHandle endpoint = layoutHandle(LAYOUT, "endpoint");
@@ -42,6 +45,16 @@ public record LibUsbTransfer(MemorySegment segment) {
         ForeignUtils.verifySize(segment, LAYOUT);
     }
     
+    /**
+     * Gets the size of a transfer that has room for the provided amount of iso packet descriptors.
+     *
+     * @param iso_packets The amount of iso packet descriptors
+     * @return The size of the transfer in bytes
+     */
+    public static long byteSize(int iso_packets) {
+        return Math.max(LAYOUT.byteSize(), ISO_PACKET_DESC_OFFSET + iso_packets * LibUsbIsoPacketDescriptor.LAYOUT.byteSize());
+    }
+    
     public LibUsbDeviceHandle dev_handle() {
         return new LibUsbDeviceHandle((MemorySegment) dev_handle.get(segment));
     }
@@ -81,6 +94,16 @@ public record LibUsbTransfer(MemorySegment segment) {
     public MemorySegment user_data() {
         return (MemorySegment) user_data.get(segment);
     }
+
+    /**
+     * Reads the user_data of a raw transfer pointer without creating a {@link LibUsbTransfer}.
+     *
+     * @param segment The transfer, must be at least {@link #LAYOUT} sized
+     * @return The address stored in user_data
+     */
+    public static long user_data$address(MemorySegment segment) {
+        return ((MemorySegment) user_data.get(segment)).address();
+    }
     
     public MemorySegment buffer() {
         return (MemorySegment) buffer.get(segment);
@@ -90,6 +113,11 @@ public record LibUsbTransfer(MemorySegment segment) {
         return (int) num_iso_packets.get(segment);
     }
     
+    public LibUsbIsoPacketDescriptor iso_packet_desc(int index) {
+        var size = LibUsbIsoPacketDescriptor.LAYOUT.byteSize();
+        return new LibUsbIsoPacketDescriptor(segment.asSlice(ISO_PACKET_DESC_OFFSET + index * size, size));
+    }
+    
     public LibUsbTransfer dev_handle(LibUsbDeviceHandle value) {
         dev_handle.set(segment, (MemorySegment) value.address());
         return this;
@@ -5,8 +5,7 @@ import net.gudenau.jusb.internal.ForeignUtils;
 import java.lang.foreign.*;
 import java.lang.invoke.MethodHandle;
 
-import static java.lang.foreign.ValueLayout.ADDRESS;
-import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static net.gudenau.jusb.internal.ForeignUtils.UNBOUND_ADDRESS;
 
 @FunctionalInterface
 public interface LibUsbTransferCallback {
@@ -25,7 +24,7 @@ public interface LibUsbTransferCallback {
     }
     
     final class OfAddress implements LibUsbTransferCallback {
-        private static final FunctionDescriptor DESCRIPTOR = FunctionDescriptor.ofVoid(ADDRESS);
+        private static final FunctionDescriptor DESCRIPTOR = FunctionDescriptor.ofVoid(UNBOUND_ADDRESS);
         private static final MethodHandle DOWNCALL = ForeignUtils.downcall(DESCRIPTOR);
         private static final MethodHandle BASE_HANDLE = ForeignUtils.findBaseHandle(LibUsbTransferCallback.class, DESCRIPTOR);
         
@@ -1,7 +1,5 @@
 package net.gudenau.jusb.internal.libusb.descriptor;
 
-import net.gudenau.jusb.descriptor.UsbConfigDescriptor;
-import net.gudenau.jusb.descriptor.UsbInterface;
 import net.gudenau.jusb.internal.ForeignUtils;
 import net.gudenau.jusb.internal.libusb.LibUsb;
 
@@ -12,7 +10,7 @@ import java.util.List;
 
 import static net.gudenau.jusb.internal.ForeignUtils.*;
 
-public record LibUsbConfigDescriptor(MemorySegment segment) implements UsbConfigDescriptor {
+public record LibUsbConfigDescriptor(MemorySegment segment) {
     public static final GroupLayout LAYOUT = structure(
         U8.withName("bLength"),
         U8.withName("bDescriptorType"),
@@ -39,48 +37,39 @@ public record LibUsbConfigDescriptor(MemorySegment segment) implements UsbConfig
     private static final VarHandle extra = layoutHandle(LAYOUT, "extra");
     private static final VarHandle extra_length = layoutHandle(LAYOUT, "extra_length");
 
-    @Override
     public byte bLength() {
         return (byte) bLength.get(segment);
     }
 
-    @Override
     public byte bDescriptorType() {
         return (byte) bDescriptorType.get(segment);
     }
 
-    @Override
     public short wTotalLength() {
         return (short) wTotalLength.get(segment);
     }
 
-    @Override
     public byte bNumInterfaces() {
         return (byte) bNumInterfaces.get(segment);
     }
 
-    @Override
     public byte bConfigurationValue() {
         return (byte) bConfigurationValue.get(segment);
     }
 
-    @Override
     public byte iConfiguration() {
         return (byte) iConfiguration.get(segment);
     }
 
-    @Override
     public byte bmAttributes() {
         return (byte) bmAttributes.get(segment);
     }
 
-    @Override
     public byte maxPower() {
         return (byte) MaxPower.get(segment);
     }
 
-    @Override
-    public List<UsbInterface> interfaces() {
+    public List<LibUsbInterface> interfaces() {
         return ForeignUtils.array(bNumInterfaces() & 0xFF, (MemorySegment) interfaces.get(segment), LibUsbInterface.LAYOUT, LibUsbInterface::new);
     }
 
@@ -92,7 +81,6 @@ public record LibUsbConfigDescriptor(MemorySegment segment) implements UsbConfig
         return (int) extra_length.get(segment);
     }
 
-    @Override
     public void close() {
         LibUsb.libusb_free_config_descriptor(this);
     }
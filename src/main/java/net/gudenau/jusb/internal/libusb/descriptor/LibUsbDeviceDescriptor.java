@@ -1,7 +1,5 @@
 package net.gudenau.jusb.internal.libusb.descriptor;
 
-import net.gudenau.jusb.descriptor.UsbDeviceDescriptor;
-
 import java.lang.foreign.GroupLayout;
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.SegmentAllocator;
@@ -9,7 +7,7 @@ import java.lang.invoke.VarHandle;
 
 import static net.gudenau.jusb.internal.ForeignUtils.*;
 
-public record LibUsbDeviceDescriptor(MemorySegment segment) implements UsbDeviceDescriptor {
+public record LibUsbDeviceDescriptor(MemorySegment segment) {
     static final GroupLayout LAYOUT = structure(
         S8.withName("bLength"),
         S8.withName("bDescriptorType"),
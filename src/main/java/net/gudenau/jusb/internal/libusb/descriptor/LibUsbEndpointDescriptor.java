@@ -1,14 +1,12 @@
 package net.gudenau.jusb.internal.libusb.descriptor;
 
-import net.gudenau.jusb.descriptor.UsbEndpointDescriptor;
-
 import java.lang.foreign.GroupLayout;
 import java.lang.foreign.MemorySegment;
 import java.lang.invoke.VarHandle;
 
 import static net.gudenau.jusb.internal.ForeignUtils.*;
 
-public record LibUsbEndpointDescriptor(MemorySegment segment) implements UsbEndpointDescriptor {
+public record LibUsbEndpointDescriptor(MemorySegment segment) {
     static final GroupLayout LAYOUT = structure(
         U8.withName("bLength"),
         U8.withName("bDescriptorType"),
@@ -31,37 +29,30 @@ public record LibUsbEndpointDescriptor(MemorySegment segment) implements UsbEndp
     private static final VarHandle extra = layoutHandle(LAYOUT, "extra");
     private static final VarHandle extra_length = layoutHandle(LAYOUT, "extra_length");
 
-    @Override
     public byte bLength() {
         return (byte) bLength.get(segment);
     }
 
-    @Override
     public byte bDescriptorType() {
         return (byte) bDescriptorType.get(segment);
     }
 
-    @Override
     public byte bEndpointAddress() {
         return (byte) bEndpointAddress.get(segment);
     }
 
-    @Override
     public byte bmAttributes() {
         return (byte) bmAttributes.get(segment);
     }
 
-    @Override
     public short wMaxPacketSize() {
         return (short) wMaxPacketSize.get(segment);
     }
 
-    @Override
     public byte bInterval() {
         return (byte) bInterval.get(segment);
     }
 
-    @Override
     public byte bSynchAddress() {
         return (byte) bSynchAddress.get(segment);
     }
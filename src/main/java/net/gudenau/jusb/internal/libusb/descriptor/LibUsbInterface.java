@@ -1,7 +1,5 @@
 package net.gudenau.jusb.internal.libusb.descriptor;
 
-import net.gudenau.jusb.descriptor.UsbInterface;
-import net.gudenau.jusb.descriptor.UsbInterfaceDescriptor;
 import net.gudenau.jusb.internal.ForeignUtils;
 
 import java.lang.foreign.GroupLayout;
@@ -11,7 +9,7 @@ import java.util.List;
 
 import static net.gudenau.jusb.internal.ForeignUtils.*;
 
-public record LibUsbInterface(MemorySegment segment) implements UsbInterface {
+public record LibUsbInterface(MemorySegment segment) {
     static final GroupLayout LAYOUT = structure(
         UNBOUND_ADDRESS.withName("altsetting"),
         S32.withName("num_altsetting")
@@ -20,8 +18,7 @@ public record LibUsbInterface(MemorySegment segment) implements UsbInterface {
     private static final VarHandle altsetting = layoutHandle(LAYOUT, "altsetting");
     private static final VarHandle num_altsetting = layoutHandle(LAYOUT, "num_altsetting");
 
-    @Override
-    public List<UsbInterfaceDescriptor> altsetting() {
+    public List<LibUsbInterfaceDescriptor> altsetting() {
         return ForeignUtils.array(num_altsetting(), (MemorySegment) altsetting.get(segment), LibUsbInterfaceDescriptor.LAYOUT, LibUsbInterfaceDescriptor::new);
     }
 
@@ -1,7 +1,5 @@
 package net.gudenau.jusb.internal.libusb.descriptor;
 
-import net.gudenau.jusb.descriptor.UsbEndpointDescriptor;
-import net.gudenau.jusb.descriptor.UsbInterfaceDescriptor;
 import net.gudenau.jusb.internal.ForeignUtils;
 
 import java.lang.foreign.GroupLayout;
@@ -11,7 +9,7 @@ import java.util.List;
 
 import static net.gudenau.jusb.internal.ForeignUtils.*;
 
-public record LibUsbInterfaceDescriptor(MemorySegment segment) implements UsbInterfaceDescriptor {
+public record LibUsbInterfaceDescriptor(MemorySegment segment) {
     static final GroupLayout LAYOUT = structure(
         U8.withName("bLength"),
         U8.withName("bDescriptorType"),
@@ -40,53 +38,43 @@ public record LibUsbInterfaceDescriptor(MemorySegment segment) implements UsbInt
     private static final VarHandle extra = layoutHandle(LAYOUT, "extra");
     private static final VarHandle extra_length = layoutHandle(LAYOUT, "extra_length");
 
-    @Override
     public byte bLength() {
         return (byte) bLength.get(segment);
     }
 
-    @Override
     public byte bDescriptorType() {
         return (byte) bDescriptorType.get(segment);
     }
 
-    @Override
     public byte bInterfaceNumber() {
         return (byte) bInterfaceNumber.get(segment);
     }
 
-    @Override
     public byte bAlternateSetting() {
         return (byte) bAlternateSetting.get(segment);
     }
 
-    @Override
     public byte bNumEndpoints() {
         return (byte) bNumEndpoints.get(segment);
     }
 
-    @Override
     public byte bInterfaceClass() {
         return (byte) bInterfaceClass.get(segment);
     }
 
-    @Override
     public byte bInterfaceSubClass() {
         return (byte) bInterfaceSubClass.get(segment);
     }
 
-    @Override
     public byte bInterfaceProtocol() {
         return (byte) bInterfaceProtocol.get(segment);
     }
 
-    @Override
     public byte iInterface() {
         return (byte) iInterface.get(segment);
     }
 
-    @Override
-    public List<UsbEndpointDescriptor> endpoints() {
+    public List<LibUsbEndpointDescriptor> endpoints() {
         return ForeignUtils.array(bNumEndpoints(), (MemorySegment) endpoint.get(segment), LibUsbEndpointDescriptor.LAYOUT, LibUsbEndpointDescriptor::new);
     }
 
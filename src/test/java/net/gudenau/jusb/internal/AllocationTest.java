@@ -0,0 +1,139 @@
+package net.gudenau.jusb.internal;
+
+import net.gudenau.jusb.JUsb;
+import net.gudenau.jusb.UsbException;
+import net.gudenau.jusb.internal.libusb.LibUsb;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the synchronous bulk and interrupt paths don't allocate per call, they used to open an arena for the
+ * transferred length of every transfer.
+ * <p>
+ * The libusb transfer functions are replaced with fakes so no device is needed. The test against a real device only
+ * runs with {@code -Djusb.test.hardware=true}.
+ */
+final class AllocationTest {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 10_000;
+    private static final int TRANSFER_SIZE = 64;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Transfers the whole buffer, like a device that is always ready
+    private static final UsbDeviceHandleImpl.SyncTransfer FAKE_BULK = (handle, endpoint, data, length, transferred, timeout) -> {
+        transferred.set(ValueLayout.JAVA_INT, 0, length);
+        return LibUsb.LIBUSB_SUCCESS;
+    };
+    // Times out after half of the buffer
+    private static final UsbDeviceHandleImpl.SyncTransfer FAKE_INTERRUPT = (handle, endpoint, data, length, transferred, timeout) -> {
+        transferred.set(ValueLayout.JAVA_INT, 0, length / 2);
+        return LibUsb.LIBUSB_ERROR_TIMEOUT;
+    };
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static long allocatedBytes(Call call) throws Exception {
+        assumeTrue(THREADS.isThreadAllocatedMemorySupported(), "Allocation tracking is not supported");
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        for(int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        var before = THREADS.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        return THREADS.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    private static int result(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int transferred(long packed) {
+        return (int) packed;
+    }
+
+    @Test
+    void scratchIsReusedPerThread() throws Exception {
+        var scratch = Scratch.get();
+        assertSame(scratch, Scratch.get());
+        assertTrue(scratch.byteSize() >= 255, "Scratch memory is too small for a descriptor");
+
+        var other = new AtomicReference<MemorySegment>();
+        var thread = new Thread(() -> other.set(Scratch.get()));
+        thread.start();
+        thread.join();
+        assertNotSame(scratch, other.get());
+    }
+
+    @Test
+    void transferredLengthIsWrittenToScratch() {
+        var address = new AtomicLong();
+        try(var arena = Arena.openConfined()) {
+            var data = arena.allocate(TRANSFER_SIZE);
+            UsbDeviceHandleImpl.syncTransfer((handle, endpoint, segment, length, transferred, timeout) -> {
+                address.set(transferred.address());
+                return LibUsb.LIBUSB_SUCCESS;
+            }, null, (byte) 0x81, data, 1000);
+        }
+        assertEquals(Scratch.get().address(), address.get());
+    }
+
+    @Test
+    void bulkTransferDoesNotAllocate() throws Exception {
+        try(var arena = Arena.openConfined()) {
+            var data = arena.allocate(TRANSFER_SIZE);
+            var packed = UsbDeviceHandleImpl.syncTransfer(FAKE_BULK, null, (byte) 0x81, data, 1000);
+            assertEquals(LibUsb.LIBUSB_SUCCESS, result(packed));
+            assertEquals(TRANSFER_SIZE, transferred(packed));
+
+            var bytes = allocatedBytes(() -> UsbDeviceHandleImpl.syncTransfer(FAKE_BULK, null, (byte) 0x81, data, 1000));
+            assertEquals(0, bytes, "Bulk transfers allocated " + bytes + " bytes");
+        }
+    }
+
+    @Test
+    void interruptTransferDoesNotAllocate() throws Exception {
+        try(var arena = Arena.openConfined()) {
+            var data = arena.allocate(TRANSFER_SIZE);
+            var packed = UsbDeviceHandleImpl.syncTransfer(FAKE_INTERRUPT, null, (byte) 0x02, data, 1000);
+            assertEquals(LibUsb.LIBUSB_ERROR_TIMEOUT, result(packed));
+            assertEquals(TRANSFER_SIZE / 2, transferred(packed));
+
+            var bytes = allocatedBytes(() -> UsbDeviceHandleImpl.syncTransfer(FAKE_INTERRUPT, null, (byte) 0x02, data, 1000));
+            assertEquals(0, bytes, "Interrupt transfers allocated " + bytes + " bytes");
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "jusb.test.hardware", matches = "true")
+    void getConfigurationDoesNotAllocate() throws Exception {
+        try(var usb = JUsb.init()) {
+            for(var device : usb.devices()) {
+                try(var handle = device.open()) {
+                    var bytes = allocatedBytes(handle::getConfiguration);
+                    assertEquals(0, bytes, "getConfiguration allocated " + bytes + " bytes");
+                    return;
+                } catch(UsbException ignored) {
+                    // Most likely missing permissions, try the next one
+                }
+            }
+            fail("No USB device could be opened");
+        }
+    }
+}